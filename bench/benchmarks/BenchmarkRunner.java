@@ -0,0 +1,29 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the neighbour finder benchmarks with the GC profiler, which adds the
+ * allocation rate per operation (gc.alloc.rate.norm) to every result.
+ * Arguments are regular expressions selecting benchmarks; all run if none.
+ * Built into target/benchmarks.jar by mvn -P bench package.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder builder = new OptionsBuilder();
+		if (args.length == 0) {
+			builder.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+		}
+		for (String include : args) {
+			builder.include(include);
+		}
+		Options options = builder.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
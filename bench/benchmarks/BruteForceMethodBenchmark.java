@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cellindexmethod.BruteForceMethod;
+import cellindexmethod.NeighbourList;
+import model.ParticleStore;
+
+/**
+ * Quadratic baseline; N stops at 10000 so a trial stays in seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BruteForceMethodBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int n;
+
+	@Param({ "0.05", "0.3" })
+	public double packingFraction;
+
+	@Param({ "0.5", "1" })
+	public double rc;
+
+	@Param({ "false", "true" })
+	public boolean periodicBounds;
+
+	private ParticleStore store;
+	private double l;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		l = Configurations.boxLength(n, packingFraction);
+		store = Configurations.uniform(n, l, 42);
+	}
+
+	@Benchmark
+	public NeighbourList bruteForceMethod() {
+		return new BruteForceMethod(store, l, rc, periodicBounds).getNeighbourList();
+	}
+
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cellindexmethod.CellIndexMethod;
+import cellindexmethod.CellSizeTuner;
+import cellindexmethod.NeighbourList;
+import cellindexmethod.PairConsumer;
+import model.ParticleStore;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellIndexMethodBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int n;
+
+	@Param({ "0.05", "0.3" })
+	public double packingFraction;
+
+	@Param({ "0.5", "1" })
+	public double rc;
+
+	@Param({ "false", "true" })
+	public boolean periodicBounds;
+
+	/**
+	 * largest: the largest valid M; optimal: {@link CellSizeTuner#optimalM};
+	 * half: half the largest valid M.
+	 */
+	@Param({ "largest", "optimal", "half" })
+	public String cells;
+
+	private ParticleStore store;
+	private double l;
+	private int m;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		l = Configurations.boxLength(n, packingFraction);
+		store = Configurations.uniform(n, l, 42);
+		int largest = CellSizeTuner.largestValidM(store, l, rc);
+		switch (cells) {
+		case "optimal":
+			m = CellSizeTuner.optimalM(store, l, rc);
+			break;
+		case "half":
+			m = Math.max(1, largest / 2);
+			break;
+		default:
+			m = largest;
+		}
+	}
+
+	@Benchmark
+	public NeighbourList cellIndexMethod() {
+		return new CellIndexMethod(store, l, m, rc, periodicBounds).getNeighbourList();
+	}
+
+	/**
+	 * Falls back to the scalar sweep unless the benchmark JVM runs with
+	 * --add-modules jdk.incubator.vector.
+	 */
+	@Benchmark
+	public NeighbourList cellIndexMethodVector() {
+		CellIndexMethod cim = new CellIndexMethod(store, l, m, rc, periodicBounds);
+		cim.setVectorKernel(true);
+		return cim.getNeighbourList();
+	}
+
+	/**
+	 * The ghost-cell sweep. With open bounds the ghost layer stays empty and
+	 * only the bounds checks are saved. Fails rather than timing the plain
+	 * sweep again when padding does not apply, with fewer than 3 periodic
+	 * cells per side.
+	 */
+	@Benchmark
+	public NeighbourList cellIndexMethodPadded() {
+		CellIndexMethod cim = new CellIndexMethod(store, l, m, rc, periodicBounds);
+		if (!cim.setPaddedGrid(true)) {
+			throw new IllegalStateException("Padded grid not in use for M = " + m);
+		}
+		return cim.getNeighbourList();
+	}
+
+	@Benchmark
+	public long cellIndexMethodForEachPair() {
+		final long[] pairs = new long[1];
+		new CellIndexMethod(store, l, m, rc, periodicBounds).forEachPair(new PairConsumer() {
+			@Override
+			public void accept(int i, int j, double dx, double dy, double dist2) {
+				pairs[0]++;
+			}
+		});
+		return pairs[0];
+	}
+
+}
@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.util.Random;
+
+import model.ParticleStore;
+
+/**
+ * Particle configurations for the benchmarks. Positions are uniform and may
+ * overlap, so large N can be set up without rejection sampling.
+ */
+final class Configurations {
+
+	static final double RADIUS = 0.25;
+
+	private Configurations() {
+	}
+
+	/**
+	 * @return the side of the box that holds n particles of radius RADIUS at the
+	 *         given packing fraction.
+	 */
+	static double boxLength(int n, double packingFraction) {
+		return Math.sqrt(n * Math.PI * RADIUS * RADIUS / packingFraction);
+	}
+
+	static ParticleStore uniform(int n, double l, long seed) {
+		Random generator = new Random(seed);
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] radius = new double[n];
+		int[] id = new int[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = generator.nextDouble() * l;
+			y[i] = generator.nextDouble() * l;
+			radius[i] = RADIUS;
+			id[i] = i + 1;
+		}
+		return new ParticleStore(x, y, radius, id);
+	}
+
+}
@@ -1,15 +1,16 @@
 package cellindexmethod;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import model.Particle;
-import model.Point;
+import model.ParticleStore;
 
-public class BruteForceMethod {
+public class BruteForceMethod implements NeighbourFinder {
 
+	private List<Particle> particles;
+	private ParticleStore store;
+	private NeighbourList neighbourList;
 	private Map<Particle, Set<Particle>> neighbours;
 	private boolean periodicBounds;
 	private double rc;
@@ -17,61 +18,79 @@ public class BruteForceMethod {
 
 	public BruteForceMethod(List<Particle> particles, double l, double rc,
 			boolean periodicBounds) {
+		this(ParticleStore.from(particles), l, rc, periodicBounds);
+		this.particles = particles;
+	}
+
+	public BruteForceMethod(ParticleStore store, double l, double rc,
+			boolean periodicBounds) {
 		this.rc = rc;
 		this.l = l;
+		this.store = store;
 		this.periodicBounds = periodicBounds;
-		neighbours = new HashMap<Particle, Set<Particle>>();
-		for (Particle p : particles) {
-			neighbours.put(p, new HashSet<Particle>());
-		}
-		fillNeighbours(particles);
 	}
 
-	private void fillNeighbours(List<Particle> particles) {
-		for (int i = 0; i < particles.size(); i++) {
-			for (int j = i + 1; j < particles.size(); j++) {
-				MaybeAddNeighbour(particles.get(i), particles.get(j));
+	/**
+	 * Visits every neighbour pair once without storing any of them.
+	 */
+	public void forEachPair(PairConsumer consumer) {
+		for (int i = 0; i < store.size(); i++) {
+			for (int j = i + 1; j < store.size(); j++) {
+				MaybeAddNeighbour(consumer, i, j);
 			}
 		}
 	}
 
-	private void MaybeAddNeighbour(Particle p, Particle q) {
-		if (p.equals(q)) {
-			return;
-		}
-		Point pp = p.getPoint().clone();
-		Point qq = q.getPoint().clone();
-		double r = rc + p.getRadius() + q.getRadius();
-		if (periodicBounds) {
+	private void fillNeighbours(ParticleStore store) {
+		PairBuffer pairs = new PairBuffer(store.size());
+		forEachPair(pairs);
+		neighbourList = NeighbourList.fromPairs(store.size(), pairs);
+	}
 
-			/*
-			 * pp.x + l/2 < qq.x because that means that adding l to pp.x makes
-			 * pp closer to qq.
-			 */
+	private void MaybeAddNeighbour(PairConsumer consumer, int p, int q) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] radius = store.getRadius();
 
-			if (pp.x < qq.x && pp.x + l / 2 < qq.x) {
-				pp.x += l;
-			}
-			if (qq.x < pp.x && qq.x + l / 2 < pp.x) {
-				qq.x += l;
-			}
-			if (pp.y < qq.y && pp.y + l / 2 < qq.y) {
-				pp.y += l;
-			}
-			if (qq.y < pp.y && qq.y + l / 2 < pp.y) {
-				qq.y += l;
-			}
+		double dx = x[q] - x[p];
+		double dy = y[q] - y[p];
+		if (periodicBounds) {
+			dx = PairKernel.minimumImage(dx, l);
+			dy = PairKernel.minimumImage(dy, l);
 		}
+		double dist2 = dx * dx + dy * dy;
+		double r = rc + radius[p] + radius[q];
+		if (dist2 < r * r) {
+			consumer.accept(p, q, dx, dy, dist2);
+		}
+	}
 
-		double dist2 = Point.dist2(pp, qq);
+	@Override
+	public ParticleStore getStore() {
+		return store;
+	}
 
-		if (dist2 < r * r) {
-			neighbours.get(p).add(q);
-			neighbours.get(q).add(p);
+	/**
+	 * The search runs on the first call.
+	 */
+	@Override
+	public NeighbourList getNeighbourList() {
+		if (neighbourList == null) {
+			fillNeighbours(store);
 		}
+		return neighbourList;
 	}
 
+	/**
+	 * Map view of {@link #getNeighbourList()}, built on first use.
+	 */
 	public Map<Particle, Set<Particle>> getNeighbours() {
+		if (neighbours == null) {
+			if (particles == null) {
+				particles = store.toParticles();
+			}
+			neighbours = getNeighbourList().toMap(particles);
+		}
 		return neighbours;
 	}
 }
@@ -0,0 +1,76 @@
+package cellindexmethod;
+
+/**
+ * Particle indices binned into an Mx x My grid with a counting sort: the
+ * particles of cell c = x * My + y are cellParticles[cellStart[c]] ..
+ * cellParticles[cellStart[c + 1] - 1], in index order.
+ */
+class CellGrid {
+
+	private final int mx;
+	private final int my;
+	private final double cellLengthX;
+	private final double cellLengthY;
+	private final int[] cellStart;
+	private final int[] cellParticles;
+
+	CellGrid(double[] x, double[] y, double l, int m) {
+		this(x, y, l, l, m, m);
+	}
+
+	CellGrid(double[] x, double[] y, double lx, double ly, int mx, int my) {
+		this.mx = mx;
+		this.my = my;
+		this.cellLengthX = lx / mx;
+		this.cellLengthY = ly / my;
+		int n = x.length;
+		int[] cellOfParticle = new int[n];
+		cellStart = new int[mx * my + 1];
+		for (int i = 0; i < n; i++) {
+			int c = cellOfX(x[i]) * my + cellOfY(y[i]);
+			cellOfParticle[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < mx * my; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellParticles = new int[n];
+		int[] next = cellStart.clone();
+		for (int i = 0; i < n; i++) {
+			cellParticles[next[cellOfParticle[i]]++] = i;
+		}
+	}
+
+	int cellOfX(double coordinate) {
+		return Math.max(0, Math.min((int) (coordinate / cellLengthX), mx - 1));
+	}
+
+	int cellOfY(double coordinate) {
+		return Math.max(0, Math.min((int) (coordinate / cellLengthY), my - 1));
+	}
+
+	int getMx() {
+		return mx;
+	}
+
+	int getMy() {
+		return my;
+	}
+
+	double getCellLengthX() {
+		return cellLengthX;
+	}
+
+	double getCellLengthY() {
+		return cellLengthY;
+	}
+
+	int[] getCellStart() {
+		return cellStart;
+	}
+
+	int[] getCellParticles() {
+		return cellParticles;
+	}
+
+}
@@ -1,151 +1,679 @@
 package cellindexmethod;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import jdk.jfr.FlightRecorder;
 
 import model.Particle;
-import model.Point;
+import model.ParticleStore;
+
+/**
+ * Cell index method over an Lx x Ly box split into Mx x My cells, with
+ * periodic or open bounds chosen per axis. The square constructors use
+ * Lx = Ly = L, Mx = My = M and the same bounds on both axes.
+ */
+public class CellIndexMethod implements NeighbourFinder {
 
-public class CellIndexMethod {
+	private static final int[] DX = { 0, 0, 1, 1, 1 };
+	private static final int[] DY = { 0, 1, 1, 0, -1 };
 
-	Set<Particle>[][] matrix;
-	private double cellLength;
+	private Set<Particle>[][] matrix;
+	private CellGrid grid;
+	private int[] cellStart;
+	private int[] cellParticles;
+	private int mx;
+	private int my;
+	private double cellLengthX;
+	private double cellLengthY;
+	private List<Particle> particles;
+	private ParticleStore store;
+	private NeighbourList neighbourList;
 	private Map<Particle, Set<Particle>> neighbours;
-	private boolean periodicBounds;
+	private boolean periodicX;
+	private boolean periodicY;
 	private double rc;
-	private double l;
+	private double lx;
+	private double ly;
+	private ForkJoinPool pool;
+	private SearchMetrics metrics;
+	private double[] xs;
+	private double[] ys;
+	private double[] radii;
+	private RangeKernel kernel;
+	private double[] cellXs;
+	private double[] cellYs;
+	private double[] cellRadii;
+	private GridIndex index;
+	private PaddedGrid padded;
 
 	public CellIndexMethod(List<Particle> particles, double l, int m, double rc, boolean periodicBounds) {
-		cellLength = l / m;
-		this.l = l;
-		this.periodicBounds = periodicBounds;
+		this(particles, l, m, rc, periodicBounds, null);
+	}
+
+	/**
+	 * @param pool - pool used to sweep the grid in parallel row strips, or null
+	 *             to sweep it on the calling thread.
+	 */
+	public CellIndexMethod(List<Particle> particles, double l, int m, double rc, boolean periodicBounds,
+			ForkJoinPool pool) {
+		this(ParticleStore.from(particles), l, m, rc, periodicBounds, pool);
+		this.particles = particles;
+	}
+
+	public CellIndexMethod(ParticleStore store, double l, int m, double rc, boolean periodicBounds) {
+		this(store, l, m, rc, periodicBounds, null);
+	}
+
+	public CellIndexMethod(ParticleStore store, double l, int m, double rc, boolean periodicBounds,
+			ForkJoinPool pool) {
+		this(store, l, l, m, m, rc, periodicBounds, periodicBounds, pool);
+	}
+
+	public CellIndexMethod(List<Particle> particles, double lx, double ly, int mx, int my, double rc,
+			boolean periodicX, boolean periodicY, ForkJoinPool pool) {
+		this(ParticleStore.from(particles), lx, ly, mx, my, rc, periodicX, periodicY, pool);
+		this.particles = particles;
+	}
+
+	public CellIndexMethod(ParticleStore store, double lx, double ly, int mx, int my, double rc, boolean periodicX,
+			boolean periodicY) {
+		this(store, lx, ly, mx, my, rc, periodicX, periodicY, null);
+	}
+
+	/**
+	 * @param periodicX - whether the bounds at x = 0 and x = lx wrap around;
+	 *                  walls otherwise.
+	 * @param periodicY - the same for y = 0 and y = ly.
+	 * @param pool      - pool used to sweep the grid in parallel strips of
+	 *                  cells along x, or null.
+	 */
+	public CellIndexMethod(ParticleStore store, double lx, double ly, int mx, int my, double rc, boolean periodicX,
+			boolean periodicY, ForkJoinPool pool) {
+		this.pool = pool;
+		cellLengthX = lx / mx;
+		cellLengthY = ly / my;
+		this.mx = mx;
+		this.my = my;
+		this.lx = lx;
+		this.ly = ly;
+		this.store = store;
+		this.periodicX = periodicX;
+		this.periodicY = periodicY;
 		this.rc = rc;
-		if (!validProperties(particles, l, m, rc)) {
-			throw new IllegalArgumentException();
+		this.xs = store.getX();
+		this.ys = store.getY();
+		this.radii = store.getRadius();
+		this.metrics = new SearchMetrics();
+		long start = System.nanoTime();
+		validate(store, rc);
+		long validated = System.nanoTime();
+		metrics.setValidationNanos(validated - start);
+		fillMatrix(store);
+		metrics.setBinningNanos(System.nanoTime() - validated);
+		metrics.fillOccupancyHistogram(cellStart);
+	}
+
+	/**
+	 * Loading the event class starts JFR, which takes a few hundred
+	 * milliseconds, so without a recording no event is created and that cost
+	 * stays out of the search.
+	 *
+	 * @return the started event, or null when JFR is not running.
+	 */
+	private static SearchEvent beginEvent() {
+		if (!FlightRecorder.isInitialized()) {
+			return null;
 		}
-		fillMatrix(particles, m);
-		fillNeighbours(particles);
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		return event;
 	}
 
+	private void commit(SearchEvent event) {
+		if (event == null) {
+			return;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.n = store.size();
+			event.m = mx;
+			event.my = my;
+			event.threads = pool == null ? 1 : pool.getParallelism();
+			event.validation = metrics.getValidationNanos();
+			event.binning = metrics.getBinningNanos();
+			event.sweep = metrics.getSweepNanos();
+			event.materialisation = metrics.getMaterialisationNanos();
+			event.candidatePairs = metrics.getCandidatePairs();
+			event.acceptedPairs = metrics.getAcceptedPairs();
+			event.periodicWraps = metrics.getPeriodicWraps();
+			event.maxOccupancy = metrics.getMaxOccupancy();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Cell contents as particle sets. It is only a view for callers that need
+	 * it, built on first use from the index binning.
+	 */
+	@SuppressWarnings("unchecked")
 	public Set<Particle>[][] getMatrix() {
+		if (matrix == null) {
+			List<Particle> particles = getParticles();
+			matrix = new Set[mx][my];
+			for (int x = 0; x < mx; x++) {
+				for (int y = 0; y < my; y++) {
+					int c = x * my + y;
+					matrix[x][y] = new HashSet<Particle>();
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						matrix[x][y].add(particles.get(cellParticles[k]));
+					}
+				}
+			}
+		}
 		return matrix;
 	}
 
+	/**
+	 * @return the cells along x, which is M for a square grid.
+	 */
+	public int getM() {
+		return mx;
+	}
+
+	public int getMx() {
+		return mx;
+	}
+
+	public int getMy() {
+		return my;
+	}
+
+	/**
+	 * @return whether both axes are periodic.
+	 */
 	public boolean isPeriodicBounds() {
-		return periodicBounds;
+		return periodicX && periodicY;
+	}
+
+	public boolean isPeriodicX() {
+		return periodicX;
+	}
+
+	public boolean isPeriodicY() {
+		return periodicY;
 	}
 
 	public double getRc() {
 		return rc;
 	}
 
+	/**
+	 * @return the box length along x, which is L for a square box.
+	 */
 	public double getL() {
-		return l;
-	}
-
-	private void fillNeighbours(List<Particle> particles) {
-		neighbours = new HashMap<Particle, Set<Particle>>();
-		for (Particle p : particles) {
-			neighbours.put(p, new HashSet<Particle>());
-		}
-		int m = matrix.length;
-		for (int x = 0; x < m; x++) {
-			for (int y = 0; y < m; y++) {
-				Set<Particle> particlesInCell = matrix[x][y];
-				for (Particle p : particlesInCell) {
-					int[] dx = { 0, 0, 1, 1, 1 };
-					int[] dy = { 0, 1, 1, 0, -1 };
-					for (int k = 0; k < 5; k++) {
-						int xx = x + dx[k];
-						int yy = y + dy[k];
-						if (!periodicBounds) {
-							if (xx >= m || yy < 0 || yy >= m) {
-								continue;
-							}
-						}
-						xx = (xx + m) % m;
-						yy = (yy + m) % m;
-						for (Particle q : matrix[xx][yy]) {
-							addNeighbour(p, q);
-						}
-					}
-				}
+		return lx;
+	}
+
+	public double getLx() {
+		return lx;
+	}
+
+	public double getLy() {
+		return ly;
+	}
+
+	@Override
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Sweep timings and counters describe the last call to
+	 * {@link #getNeighbourList()} or {@link #forEachPair}.
+	 */
+	public SearchMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Tests each particle against whole cells with the Vector API kernel, when
+	 * it was built from the vector/ source root and the jdk.incubator.vector
+	 * module is present (--add-modules jdk.incubator.vector). Results are the
+	 * same with and without it.
+	 * 
+	 * @return whether the vector kernel is in use.
+	 */
+	public boolean setVectorKernel(boolean enabled) {
+		kernel = enabled ? RangeKernels.vector() : null;
+		if (kernel != null && cellXs == null) {
+			int n = cellParticles.length;
+			cellXs = new double[n];
+			cellYs = new double[n];
+			cellRadii = new double[n];
+			for (int k = 0; k < n; k++) {
+				int p = cellParticles[k];
+				cellXs[k] = xs[p];
+				cellYs[k] = ys[p];
+				cellRadii[k] = radii[p];
 			}
 		}
+		return kernel != null;
+	}
 
+	/**
+	 * Sweeps a copy of the grid padded with a layer of ghost cells, which hold
+	 * the opposite boundary particles with their coordinates already shifted
+	 * by the box length. Pair tests then need no wrapping, and hits on ghosts
+	 * are reported with the index of the original particle. Along walls the
+	 * layer stays empty, which still spares the bounds checks. Does not apply
+	 * when a periodic axis has fewer than 3 cells, and only applies to searches
+	 * started afterwards. Accepted pairs match the wrapped sweep up to
+	 * rounding of the shifted coordinates.
+	 * 
+	 * @return whether the padded grid is in use.
+	 */
+	public boolean setPaddedGrid(boolean enabled) {
+		if (!enabled || needsDedup()) {
+			padded = null;
+		} else if (padded == null) {
+			padded = new PaddedGrid(grid, xs, ys, radii, lx, ly, periodicX, periodicY);
+		}
+		return padded != null;
 	}
 
-	private void addNeighbour(Particle p, Particle q) {
-		if (p.equals(q)) {
-			return;
+	/**
+	 * Point queries over the particles, sharing the binning of this search.
+	 */
+	public GridIndex getIndex() {
+		if (index == null) {
+			index = new GridIndex(store, grid, lx, ly, periodicX, periodicY);
 		}
+		return index;
+	}
 
-		Point pp = p.getPoint().clone();
-		Point qq = q.getPoint().clone();
+	CellGrid getGrid() {
+		return grid;
+	}
 
-		if (periodicBounds) {
+	/**
+	 * Visits every neighbour pair once, on the calling thread, without storing
+	 * any of them. Neither the neighbour list nor the map view is built.
+	 */
+	public void forEachPair(PairConsumer consumer) {
+		SearchEvent event = beginEvent();
+		metrics.resetSweep();
+		long start = System.nanoTime();
+		sweep(0, mx, consumer, metrics);
+		metrics.setSweepNanos(System.nanoTime() - start);
+		metrics.setMaterialisationNanos(0);
+		commit(event);
+	}
 
-			if (pp.x < qq.x && pp.x + 2 * cellLength < qq.x) {
-				pp.x += l;
+	private void fillNeighbours(ParticleStore store) {
+		SearchEvent event = beginEvent();
+		metrics.resetSweep();
+		long start = System.nanoTime();
+		PairBuffer[] buffers;
+		if (pool == null || pool.getParallelism() == 1 || mx == 1) {
+			buffers = new PairBuffer[] { new PairBuffer(store.size()) };
+			sweep(0, mx, buffers[0], metrics);
+		} else {
+			int strips = Math.min(mx, pool.getParallelism() * 4);
+			StripTask[] tasks = new StripTask[strips];
+			buffers = new PairBuffer[strips];
+			for (int s = 0; s < strips; s++) {
+				buffers[s] = new PairBuffer(store.size() / strips);
+				tasks[s] = new StripTask(s * mx / strips, (s + 1) * mx / strips, buffers[s]);
+			}
+			for (StripTask task : tasks) {
+				pool.execute(task);
+			}
+			for (StripTask task : tasks) {
+				task.join();
+				metrics.merge(task.metrics);
 			}
+		}
+		long swept = System.nanoTime();
+		metrics.setSweepNanos(swept - start);
+		neighbourList = NeighbourList.fromPairs(store.size(), buffers);
+		metrics.setMaterialisationNanos(System.nanoTime() - swept);
+		commit(event);
+	}
 
-			if (qq.x < pp.x && qq.x + 2 * cellLength < pp.x) {
-				qq.x += l;
+	/**
+	 * Sweeps the half stencil of every cell in rows [fromX, toX).
+	 */
+	private void sweep(int fromX, int toX, PairConsumer consumer, SearchMetrics metrics) {
+		if (padded != null) {
+			sweepPadded(fromX, toX, consumer, metrics);
+			return;
+		}
+		long accepted = 0;
+		long candidates = 0;
+		long wraps = 0;
+		boolean dedup = needsDedup();
+		int[] neighbourCells = new int[DX.length];
+		// strip metrics only count pairs; the occupancy is on the search's own
+		int[] hits = kernel == null ? null : new int[this.metrics.getMaxOccupancy()];
+		for (int x = fromX; x < toX; x++) {
+			for (int y = 0; y < my; y++) {
+				int c = x * my + y;
+				if (cellStart[c] == cellStart[c + 1]) {
+					continue;
+				}
+				int count = 0;
+				long stencilSize = 0;
+				long wrappedSize = 0;
+				for (int k = 1; k < DX.length; k++) {
+					int nc = stencilCell(x, y, k);
+					if (nc < 0) {
+						continue;
+					}
+					int yy = y + DY[k];
+					boolean wrapped = x + DX[k] >= mx || yy < 0 || yy >= my;
+					/*
+					 * Skips the cell itself, cells already listed, and cells that
+					 * reach this one too and will visit it from the lower index.
+					 */
+					if (dedup && (nc == c || contains(neighbourCells, count, nc)
+							|| (nc < c && reaches(nc, c)))) {
+						continue;
+					}
+					neighbourCells[count++] = nc;
+					stencilSize += cellStart[nc + 1] - cellStart[nc];
+					if (wrapped) {
+						wrappedSize += cellStart[nc + 1] - cellStart[nc];
+					}
+				}
+				int end = cellStart[c + 1];
+				long size = end - cellStart[c];
+				candidates += size * (size - 1) / 2 + size * stencilSize;
+				wraps += size * wrappedSize;
+				for (int a = cellStart[c]; a < end; a++) {
+					int p = cellParticles[a];
+					accepted += visitRange(consumer, p, a + 1, end, hits);
+					for (int k = 0; k < count; k++) {
+						int nc = neighbourCells[k];
+						accepted += visitRange(consumer, p, cellStart[nc], cellStart[nc + 1], hits);
+					}
+				}
 			}
+		}
+		metrics.addCandidatePairs(candidates);
+		metrics.addAcceptedPairs(accepted);
+		metrics.addPeriodicWraps(wraps);
+	}
+
+	/**
+	 * With fewer than 3 cells along a periodic axis the half stencil reaches
+	 * the same cell through more than one offset, or reaches a cell that also
+	 * reaches it back, so the neighbour cells have to be deduplicated.
+	 */
+	private boolean needsDedup() {
+		return (periodicX && mx < 3) || (periodicY && my < 3);
+	}
 
-			if (pp.y < qq.y && pp.y + 2 * cellLength < qq.y) {
-				pp.y += l;
+	/**
+	 * @return the cell at stencil offset k from cell (x, y), or -1 past a wall.
+	 */
+	private int stencilCell(int x, int y, int k) {
+		int xx = x + DX[k];
+		int yy = y + DY[k];
+		if (xx >= mx) {
+			if (!periodicX) {
+				return -1;
 			}
+			xx -= mx;
+		}
+		if (yy < 0 || yy >= my) {
+			if (!periodicY) {
+				return -1;
+			}
+			yy = (yy + my) % my;
+		}
+		return xx * my + yy;
+	}
 
-			if (qq.y < pp.y && qq.y + 2 * cellLength < pp.y) {
-				qq.y += l;
+	private boolean reaches(int from, int to) {
+		for (int k = 1; k < DX.length; k++) {
+			if (stencilCell(from / my, from % my, k) == to) {
+				return true;
 			}
 		}
+		return false;
+	}
 
-		double dist2 = Point.dist2(pp, qq);
-		double r = rc + p.getRadius() + q.getRadius();
+	/**
+	 * {@link #sweep} over the padded grid: the stencil cells are fixed offsets
+	 * of the padded cell, and no pair needs wrapping.
+	 */
+	private void sweepPadded(int fromX, int toX, PairConsumer consumer, SearchMetrics metrics) {
+		long accepted = 0;
+		long candidates = 0;
+		long wraps = 0;
+		int[] start = padded.getCellStart();
+		int[] offsets = new int[DX.length];
+		for (int k = 1; k < DX.length; k++) {
+			offsets[k] = padded.offset(DX[k], DY[k]);
+		}
+		int[] hits = kernel == null ? null : new int[padded.getMaxOccupancy()];
+		for (int x = fromX; x < toX; x++) {
+			for (int y = 0; y < my; y++) {
+				int c = padded.cellOf(x, y);
+				int end = start[c + 1];
+				if (start[c] == end) {
+					continue;
+				}
+				long size = end - start[c];
+				long stencilSize = 0;
+				for (int k = 1; k < DX.length; k++) {
+					int nc = c + offsets[k];
+					stencilSize += start[nc + 1] - start[nc];
+					if (padded.isGhost(nc)) {
+						wraps += size * (start[nc + 1] - start[nc]);
+					}
+				}
+				candidates += size * (size - 1) / 2 + size * stencilSize;
+				for (int a = start[c]; a < end; a++) {
+					accepted += visitPaddedRange(consumer, a, a + 1, end, hits);
+					for (int k = 1; k < DX.length; k++) {
+						int nc = c + offsets[k];
+						accepted += visitPaddedRange(consumer, a, start[nc], start[nc + 1], hits);
+					}
+				}
+			}
+		}
+		metrics.addCandidatePairs(candidates);
+		metrics.addAcceptedPairs(accepted);
+		metrics.addPeriodicWraps(wraps);
+	}
 
+	/**
+	 * Checks the particle at padded position a against positions [from, to).
+	 * 
+	 * @return the number of neighbours found.
+	 */
+	private int visitPaddedRange(PairConsumer consumer, int a, int from, int to, int[] hits) {
+		double[] px = padded.getX();
+		double[] py = padded.getY();
+		double[] pr = padded.getRadius();
+		int accepted = 0;
+		if (kernel != null) {
+			int count = kernel.hits(px[a], py[a], pr[a], px, py, pr, from, to, rc, lx, ly, false, false, hits);
+			for (int k = 0; k < count; k++) {
+				if (addPaddedNeighbour(consumer, a, hits[k])) {
+					accepted++;
+				}
+			}
+			return accepted;
+		}
+		for (int b = from; b < to; b++) {
+			if (addPaddedNeighbour(consumer, a, b)) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	private boolean addPaddedNeighbour(PairConsumer consumer, int a, int b) {
+		double[] px = padded.getX();
+		double[] py = padded.getY();
+		double[] pr = padded.getRadius();
+		double dx = px[b] - px[a];
+		double dy = py[b] - py[a];
+		double dist2 = dx * dx + dy * dy;
+		double r = rc + pr[a] + pr[b];
 		if (dist2 < r * r) {
-			neighbours.get(p).add(q);
-			neighbours.get(q).add(p);
+			int[] index = padded.getIndex();
+			consumer.accept(index[a], index[b], dx, dy, dist2);
+			return true;
 		}
+		return false;
 	}
 
-	@SuppressWarnings("unchecked")
-	private void fillMatrix(List<Particle> particles, int m) {
-		matrix = new Set[m][m];
-		for (int i = 0; i < m; i++) {
-			for (int j = 0; j < m; j++) {
-				matrix[i][j] = new HashSet<Particle>();
+	/**
+	 * Checks p against the particles at positions [from, to) of cellParticles.
+	 * 
+	 * @return the number of neighbours found.
+	 */
+	private int visitRange(PairConsumer consumer, int p, int from, int to, int[] hits) {
+		int accepted = 0;
+		if (kernel != null) {
+			int count = kernel.hits(xs[p], ys[p], radii[p], cellXs, cellYs, cellRadii, from, to, rc, lx, ly,
+					periodicX, periodicY, hits);
+			for (int k = 0; k < count; k++) {
+				if (addNeighbour(consumer, p, cellParticles[hits[k]])) {
+					accepted++;
+				}
 			}
+			return accepted;
 		}
-		for (Particle particle : particles) {
-			Point p = particle.getPoint();
-			matrix[(int) (p.x / cellLength)][(int) (p.y / cellLength)].add(particle);
+		for (int b = from; b < to; b++) {
+			if (addNeighbour(consumer, p, cellParticles[b])) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	private class StripTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int fromX, toX;
+		private final PairBuffer pairs;
+		private final SearchMetrics metrics = new SearchMetrics();
+
+		StripTask(int fromX, int toX, PairBuffer pairs) {
+			this.fromX = fromX;
+			this.toX = toX;
+			this.pairs = pairs;
+		}
+
+		@Override
+		protected void compute() {
+			sweep(fromX, toX, pairs, metrics);
 		}
 	}
 
-	private boolean validProperties(List<Particle> particles, double l, int m, double rc) {
+	private static boolean contains(int[] values, int count, int value) {
+		for (int k = 0; k < count; k++) {
+			if (values[k] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean addNeighbour(PairConsumer consumer, int p, int q) {
+		double dx = xs[q] - xs[p];
+		double dy = ys[q] - ys[p];
+		if (periodicX) {
+			dx = PairKernel.minimumImage(dx, lx);
+		}
+		if (periodicY) {
+			dy = PairKernel.minimumImage(dy, ly);
+		}
+		double dist2 = dx * dx + dy * dy;
+		double r = rc + radii[p] + radii[q];
+		if (dist2 < r * r) {
+			consumer.accept(p, q, dx, dy, dist2);
+			return true;
+		}
+		return false;
+	}
+
+	private void fillMatrix(ParticleStore store) {
+		grid = new CellGrid(store.getX(), store.getY(), lx, ly, mx, my);
+		cellStart = grid.getCellStart();
+		cellParticles = grid.getCellParticles();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the cells along either axis are not
+	 *                                  longer than {@link #minCellLength}.
+	 */
+	private void validate(ParticleStore store, double rc) {
+		double minLength = minCellLength(store.getRadius(), rc);
+		if (!(cellLengthX > minLength)) {
+			throw new IllegalArgumentException("Cells along x (" + cellLengthX + ") must exceed " + minLength);
+		}
+		if (!(cellLengthY > minLength)) {
+			throw new IllegalArgumentException("Cells along y (" + cellLengthY + ") must exceed " + minLength);
+		}
+	}
+
+	/**
+	 * @return the length a cell has to exceed so that neighbours are always in
+	 *         adjacent cells: rc plus the two largest radii.
+	 */
+	static double minCellLength(double[] radii, double rc) {
 		double max1 = 0;
 		double max2 = 0;
-		for (Particle p : particles) {
-			if (p.getRadius() >= max1) {
+		for (double radius : radii) {
+			if (radius >= max1) {
 				max2 = max1;
-				max1 = p.getRadius();
+				max1 = radius;
 			} else {
-				if (p.getRadius() >= max2) {
-					max2 = p.getRadius();
+				if (radius >= max2) {
+					max2 = radius;
 				}
 			}
 		}
-		return (cellLength > rc + max1 + max2);
+		return rc + max1 + max2;
 	}
 
+	/**
+	 * The neighbour search runs on the first call; the constructor only
+	 * validates and bins the particles.
+	 */
+	@Override
+	public NeighbourList getNeighbourList() {
+		if (neighbourList == null) {
+			fillNeighbours(store);
+		}
+		return neighbourList;
+	}
+
+	/**
+	 * Map view of {@link #getNeighbourList()}, built on first use.
+	 */
 	public Map<Particle, Set<Particle>> getNeighbours() {
+		if (neighbours == null) {
+			neighbours = getNeighbourList().toMap(getParticles());
+		}
 		return neighbours;
 	}
 
+	private List<Particle> getParticles() {
+		if (particles == null) {
+			particles = store.toParticles();
+		}
+		return particles;
+	}
+
 }
@@ -0,0 +1,178 @@
+package cellindexmethod;
+
+import model.ParticleStore3D;
+
+/**
+ * Three-dimensional cell index method over an M x M x M grid, periodic on all
+ * three axes when periodicBounds is set. Every cell is paired with itself and
+ * with the 13 cells of its half shell, so each pair is tested once. Works on a
+ * {@link ParticleStore3D}, so it is not a {@link NeighbourFinder}.
+ */
+public class CellIndexMethod3D {
+
+	private static final int[][] HALF_SHELL = halfShell();
+
+	private int m;
+	private double cellLength;
+	private int[] cellStart;
+	private int[] cellParticles;
+	private ParticleStore3D store;
+	private NeighbourList neighbourList;
+	private boolean periodicBounds;
+	private double rc;
+	private double l;
+
+	public CellIndexMethod3D(ParticleStore3D store, double l, int m, double rc, boolean periodicBounds) {
+		cellLength = l / m;
+		this.m = m;
+		this.l = l;
+		this.store = store;
+		this.periodicBounds = periodicBounds;
+		this.rc = rc;
+		if (!(cellLength > CellIndexMethod.minCellLength(store.getRadius(), rc))) {
+			throw new IllegalArgumentException();
+		}
+		fillMatrix();
+		fillNeighbours();
+	}
+
+	/**
+	 * @return the offsets (dx, dy, dz) that come after (0, 0, 0) in
+	 *         lexicographic order.
+	 */
+	private static int[][] halfShell() {
+		int[][] offsets = new int[13][];
+		int k = 0;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dz = -1; dz <= 1; dz++) {
+					if (dx > 0 || (dx == 0 && (dy > 0 || (dy == 0 && dz > 0)))) {
+						offsets[k++] = new int[] { dx, dy, dz };
+					}
+				}
+			}
+		}
+		return offsets;
+	}
+
+	public boolean isPeriodicBounds() {
+		return periodicBounds;
+	}
+
+	public double getRc() {
+		return rc;
+	}
+
+	public double getL() {
+		return l;
+	}
+
+	public ParticleStore3D getStore() {
+		return store;
+	}
+
+	public NeighbourList getNeighbourList() {
+		return neighbourList;
+	}
+
+	private int cellIndex(int x, int y, int z) {
+		return (x * m + y) * m + z;
+	}
+
+	private void fillNeighbours() {
+		PairBuffer pairs = new PairBuffer(store.size());
+		/*
+		 * Same as in CellIndexMethod: with fewer than 3 periodic cells per side
+		 * the neighbour cells are deduplicated and visited from the lower index.
+		 */
+		boolean dedup = periodicBounds && m < 3;
+		int[] neighbourCells = new int[HALF_SHELL.length];
+		for (int x = 0; x < m; x++) {
+			for (int y = 0; y < m; y++) {
+				for (int z = 0; z < m; z++) {
+					int c = cellIndex(x, y, z);
+					if (cellStart[c] == cellStart[c + 1]) {
+						continue;
+					}
+					int count = 0;
+					for (int[] offset : HALF_SHELL) {
+						int xx = x + offset[0];
+						int yy = y + offset[1];
+						int zz = z + offset[2];
+						if (!periodicBounds) {
+							if (xx < 0 || xx >= m || yy < 0 || yy >= m || zz < 0 || zz >= m) {
+								continue;
+							}
+						}
+						int nc = cellIndex((xx + m) % m, (yy + m) % m, (zz + m) % m);
+						if (dedup && (nc <= c || contains(neighbourCells, count, nc))) {
+							continue;
+						}
+						neighbourCells[count++] = nc;
+					}
+					int end = cellStart[c + 1];
+					for (int a = cellStart[c]; a < end; a++) {
+						int p = cellParticles[a];
+						for (int b = a + 1; b < end; b++) {
+							addNeighbour(pairs, p, cellParticles[b]);
+						}
+						for (int k = 0; k < count; k++) {
+							int nc = neighbourCells[k];
+							for (int b = cellStart[nc]; b < cellStart[nc + 1]; b++) {
+								addNeighbour(pairs, p, cellParticles[b]);
+							}
+						}
+					}
+				}
+			}
+		}
+		neighbourList = NeighbourList.fromPairs(store.size(), pairs);
+	}
+
+	private static boolean contains(int[] values, int count, int value) {
+		for (int k = 0; k < count; k++) {
+			if (values[k] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addNeighbour(PairBuffer pairs, int p, int q) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] z = store.getZ();
+		double[] radius = store.getRadius();
+		if (PairKernel.areNeighbours(x[p], y[p], z[p], radius[p], x[q], y[q], z[q], radius[q], rc, l,
+				periodicBounds)) {
+			pairs.add(p, q);
+		}
+	}
+
+	private void fillMatrix() {
+		int n = store.size();
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] z = store.getZ();
+		int[] cellOfParticle = new int[n];
+		cellStart = new int[m * m * m + 1];
+		for (int i = 0; i < n; i++) {
+			int c = cellIndex(cellOf(x[i]), cellOf(y[i]), cellOf(z[i]));
+			cellOfParticle[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < m * m * m; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellParticles = new int[n];
+		int[] next = cellStart.clone();
+		for (int i = 0; i < n; i++) {
+			cellParticles[next[cellOfParticle[i]]++] = i;
+		}
+	}
+
+	private int cellOf(double coordinate) {
+		return Math.max(0, Math.min((int) (coordinate / cellLength), m - 1));
+	}
+
+}
@@ -0,0 +1,127 @@
+package cellindexmethod;
+
+import model.ParticleStore;
+
+/**
+ * Picks the number of cells per side for {@link CellIndexMethod}.
+ */
+public final class CellSizeTuner {
+
+	/*
+	 * Cost of one cell relative to one pair test: every cell has its range read
+	 * to skip it when empty, and an occupied one also resolves its 4 stencil
+	 * neighbours, with their wall or wrap checks, before any pair is tested.
+	 */
+	static final double CELL_COST = 2.0;
+	static final double STENCIL_CELLS = 4.5;
+	/*
+	 * Largest M whose M * M + 1 cell offsets still fit in an int array.
+	 */
+	static final int MAX_M = 46340;
+
+	private CellSizeTuner() {
+	}
+
+	/**
+	 * @return the largest M, up to {@link #MAX_M}, for which l / M exceeds rc
+	 *         plus the two largest radii.
+	 * @throws IllegalArgumentException if not even M = 1 is valid.
+	 */
+	public static int largestValidM(ParticleStore store, double l, double rc) {
+		return largestValidM(store.getRadius(), l, rc);
+	}
+
+	static int largestValidM(double[] radii, double l, double rc) {
+		double minLength = CellIndexMethod.minCellLength(radii, rc);
+		if (!(l > minLength)) {
+			throw new IllegalArgumentException("No valid M: l must exceed " + minLength);
+		}
+		// minLength is 0 for point particles and rc = 0, which any M satisfies
+		int m = (int) Math.min(Math.ceil(l / minLength), MAX_M);
+		while (m > 1 && !(l / m > minLength)) {
+			m--;
+		}
+		return m;
+	}
+
+	/**
+	 * Refines {@link #largestValidM} with the particle density: smaller cells
+	 * mean fewer pairs tested per cell, but more cells to visit. The cost
+	 * estimate is CELL_COST * M^2 + STENCIL_CELLS * N^2 / M^2, and the best M
+	 * not above the largest valid one is returned.
+	 */
+	public static int optimalM(ParticleStore store, double l, double rc) {
+		return optimalM(store.getRadius(), l, rc);
+	}
+
+	static int optimalM(double[] radii, double l, double rc) {
+		int maxM = largestValidM(radii, l, rc);
+		double n = radii.length;
+		int best = (int) Math.round(Math.pow(STENCIL_CELLS * n * n / CELL_COST, 0.25));
+		best = Math.max(1, Math.min(best, maxM));
+		if (best < maxM && cost(best + 1, n) < cost(best, n)) {
+			best++;
+		}
+		return best;
+	}
+
+	/**
+	 * {@link #optimalM} for an lx x ly box. The cost estimate only depends on
+	 * the total cell count Mx * My, so the count it favours is split into
+	 * cells close to square; when one axis hits its largest valid count the
+	 * other takes the rest. Single steps on either axis are then kept while
+	 * they lower the estimate, as optimalM does with M + 1.
+	 *
+	 * @return {mx, my}.
+	 */
+	public static int[] optimalCells(ParticleStore store, double lx, double ly, double rc) {
+		return optimalCells(store.getRadius(), lx, ly, rc);
+	}
+
+	static int[] optimalCells(double[] radii, double lx, double ly, double rc) {
+		int maxMx = largestValidM(radii, lx, rc);
+		int maxMy = largestValidM(radii, ly, rc);
+		double n = radii.length;
+		double cells = Math.max(1, Math.sqrt(STENCIL_CELLS * n * n / CELL_COST));
+		double side = Math.sqrt(lx * ly / cells);
+		int mx = clamp(Math.round(lx / side), maxMx);
+		int my = clamp(Math.round(ly / side), maxMy);
+		if (mx == maxMx) {
+			my = clamp(Math.round(cells / mx), maxMy);
+		} else if (my == maxMy) {
+			mx = clamp(Math.round(cells / my), maxMx);
+		}
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			double current = cellCost((double) mx * my, n);
+			if (mx < maxMx && cellCost((double) (mx + 1) * my, n) < current) {
+				mx++;
+				improved = true;
+			} else if (my < maxMy && cellCost((double) mx * (my + 1), n) < current) {
+				my++;
+				improved = true;
+			} else if (mx > 1 && cellCost((double) (mx - 1) * my, n) < current) {
+				mx--;
+				improved = true;
+			} else if (my > 1 && cellCost((double) mx * (my - 1), n) < current) {
+				my--;
+				improved = true;
+			}
+		}
+		return new int[] { mx, my };
+	}
+
+	private static int clamp(long m, int max) {
+		return (int) Math.max(1, Math.min(m, max));
+	}
+
+	private static double cost(double m, double n) {
+		return cellCost(m * m, n);
+	}
+
+	private static double cellCost(double cells, double n) {
+		return CELL_COST * cells + STENCIL_CELLS * n * n / cells;
+	}
+
+}
@@ -0,0 +1,161 @@
+package cellindexmethod;
+
+import java.util.concurrent.ForkJoinPool;
+
+import model.ParticleStore;
+
+/**
+ * Picks a neighbour search engine from cheap statistics of the input, so
+ * callers do not need to know where the engines cross over. The statistics are
+ * gathered in linear time with a single binning at the M
+ * {@link CellSizeTuner#optimalM} would use:
+ * <ul>
+ * <li>N and the packing fraction, sum of pi r^2 over L^2;</li>
+ * <li>the radius spread, largest over smallest positive radius;</li>
+ * <li>the clustering, M^2 * sum of s (s - 1) over N (N - 1), s being the cell
+ * occupancies: the pairs sharing a cell against their expected number. It is 1
+ * on average for uniformly spread particles at any particles per cell, and
+ * grows as they bunch up.</li>
+ * </ul>
+ * The cell method is estimated at CELL_COST * M^2 + STENCIL_CELLS * sum of
+ * squared occupancies pair tests, and brute force at N (N - 1) / 2.
+ */
+public class FinderSelector {
+
+	public enum Engine {
+		BRUTE_FORCE, CELL_INDEX, MULTI_LEVEL, KD_TREE
+	}
+
+	/**
+	 * Radius spread from which radius classes at least two levels apart exist,
+	 * and a single grid sized for the largest radius is too coarse for the
+	 * rest.
+	 */
+	public static final double MULTI_LEVEL_SPREAD = 4;
+
+	/**
+	 * Clustering from which most particles sit in a few cells and the grid
+	 * sweep degrades towards brute force, so the {@link KdTree} is used.
+	 * Uniform inputs stay within about 1.3 of their baseline of 1, even at a
+	 * few hundred particles.
+	 */
+	public static final double KD_TREE_CLUSTERING = 4;
+
+	private final ParticleStore store;
+	private final double l;
+	private final double rc;
+	private final boolean periodicBounds;
+	private Engine engine;
+	private String reason;
+	private int m;
+	private double packingFraction;
+	private double radiusSpread;
+	private double clustering;
+
+	public FinderSelector(ParticleStore store, double l, double rc, boolean periodicBounds) {
+		this.store = store;
+		this.l = l;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		select();
+	}
+
+	private void select() {
+		int n = store.size();
+		double[] radius = store.getRadius();
+		double area = 0;
+		double minRadius = Double.POSITIVE_INFINITY;
+		double maxRadius = 0;
+		for (int i = 0; i < n; i++) {
+			area += Math.PI * radius[i] * radius[i];
+			maxRadius = Math.max(maxRadius, radius[i]);
+			if (radius[i] > 0) {
+				minRadius = Math.min(minRadius, radius[i]);
+			}
+		}
+		packingFraction = area / (l * l);
+		radiusSpread = minRadius == Double.POSITIVE_INFINITY ? 1 : maxRadius / minRadius;
+
+		if (!(l > CellIndexMethod.minCellLength(radius, rc))) {
+			engine = Engine.BRUTE_FORCE;
+			reason = "no valid M: l does not exceed rc plus the two largest radii";
+			return;
+		}
+		m = CellSizeTuner.optimalM(radius, l, rc);
+		int[] cellStart = new CellGrid(store.getX(), store.getY(), l, m).getCellStart();
+		double squares = 0;
+		for (int c = 0; c < m * m; c++) {
+			double size = cellStart[c + 1] - cellStart[c];
+			squares += size * size;
+		}
+		clustering = n < 2 ? 1 : (squares - n) * m * m / ((double) n * (n - 1));
+
+		double bruteCost = n * (n - 1.0) / 2;
+		double cellCost = CellSizeTuner.CELL_COST * m * m + CellSizeTuner.STENCIL_CELLS * squares + n;
+		String costs = String.format("estimated %.3g pair tests for the cell method at M = %d against %.3g for brute force",
+				cellCost, m, bruteCost);
+		if (bruteCost <= cellCost) {
+			engine = Engine.BRUTE_FORCE;
+			reason = costs;
+		} else if (clustering >= KD_TREE_CLUSTERING) {
+			engine = Engine.KD_TREE;
+			reason = String.format("clustering %.3g is at least %.3g; ", clustering, KD_TREE_CLUSTERING) + costs;
+		} else if (radiusSpread >= MULTI_LEVEL_SPREAD) {
+			engine = Engine.MULTI_LEVEL;
+			reason = String.format("radius spread %.3g is at least %.3g; ", radiusSpread, MULTI_LEVEL_SPREAD) + costs;
+		} else {
+			engine = Engine.CELL_INDEX;
+			reason = costs;
+		}
+	}
+
+	/**
+	 * @param pool - pool for the cell method sweep and the tree, or null.
+	 */
+	public NeighbourFinder newFinder(ForkJoinPool pool) {
+		switch (engine) {
+		case BRUTE_FORCE:
+			return new BruteForceMethod(store, l, rc, periodicBounds);
+		case MULTI_LEVEL:
+			return new MultiLevelGrid(store, l, rc, periodicBounds);
+		case KD_TREE:
+			return new KdTree(store, l, rc, periodicBounds, pool);
+		default:
+			return new CellIndexMethod(store, l, m, rc, periodicBounds, pool);
+		}
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return the M for {@link Engine#CELL_INDEX}, or 0 if no M is valid.
+	 */
+	public int getM() {
+		return m;
+	}
+
+	public double getPackingFraction() {
+		return packingFraction;
+	}
+
+	public double getRadiusSpread() {
+		return radiusSpread;
+	}
+
+	public double getClustering() {
+		return clustering;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (N = %d, packing fraction %.3g, radius spread %.3g, clustering %.3g): %s", engine,
+				store.size(), packingFraction, radiusSpread, clustering, reason);
+	}
+
+}
@@ -0,0 +1,213 @@
+package cellindexmethod;
+
+import model.ParticleStore;
+import model.Point;
+
+/**
+ * Point queries against a binned configuration: every particle within a
+ * radius of a probe, and the k particles nearest to it. Distances are between
+ * the probe and particle centres, with the minimum-image convention along
+ * periodic axes.
+ *
+ * The index is immutable once built and queries only write to the arrays
+ * they are given, so any number of threads can query it at once without
+ * allocating.
+ */
+public class GridIndex {
+
+	private final ParticleStore store;
+	private final double[] xs;
+	private final double[] ys;
+	private final double lx, ly;
+	private final int mx, my;
+	private final double cellLengthX, cellLengthY;
+	private final boolean periodicX, periodicY;
+	private final int[] cellStart;
+	private final int[] cellParticles;
+	/*
+	 * Cell offsets along each axis that reach every cell once: [-s, s] clipped
+	 * to [low, high] when periodic.
+	 */
+	private final int lowX, highX, lowY, highY;
+
+	public GridIndex(ParticleStore store, double l, int m, boolean periodicBounds) {
+		this(store, l, l, m, m, periodicBounds, periodicBounds);
+	}
+
+	public GridIndex(ParticleStore store, double lx, double ly, int mx, int my, boolean periodicX,
+			boolean periodicY) {
+		this(store, new CellGrid(store.getX(), store.getY(), lx, ly, mx, my), lx, ly, periodicX, periodicY);
+	}
+
+	GridIndex(ParticleStore store, CellGrid grid, double lx, double ly, boolean periodicX, boolean periodicY) {
+		this.store = store;
+		this.xs = store.getX();
+		this.ys = store.getY();
+		this.lx = lx;
+		this.ly = ly;
+		this.mx = grid.getMx();
+		this.my = grid.getMy();
+		this.cellLengthX = grid.getCellLengthX();
+		this.cellLengthY = grid.getCellLengthY();
+		this.periodicX = periodicX;
+		this.periodicY = periodicY;
+		this.cellStart = grid.getCellStart();
+		this.cellParticles = grid.getCellParticles();
+		lowX = periodicX ? -((mx - 1) / 2) : -mx;
+		highX = periodicX ? mx / 2 : mx;
+		lowY = periodicY ? -((my - 1) / 2) : -my;
+		highY = periodicY ? my / 2 : my;
+	}
+
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	public int rangeQuery(Point probe, double r, int[] out) {
+		return rangeQuery(probe.x, probe.y, r, out);
+	}
+
+	/**
+	 * Writes to out the store indices of the particles whose centre is closer
+	 * than r to (px, py), in cell order. Along a periodic axis r should not
+	 * exceed half the box length.
+	 *
+	 * @return the number of such particles; only the first out.length are
+	 *         written when there are more.
+	 */
+	public int rangeQuery(double px, double py, double r, int[] out) {
+		px = wrap(px, lx, periodicX);
+		py = wrap(py, ly, periodicY);
+		int cx = cellOf(px, cellLengthX, mx);
+		int cy = cellOf(py, cellLengthY, my);
+		int reachX = (int) Math.ceil(r / cellLengthX);
+		int reachY = (int) Math.ceil(r / cellLengthY);
+		double r2 = r * r;
+		int found = 0;
+		for (int dx = Math.max(-reachX, lowX); dx <= Math.min(reachX, highX); dx++) {
+			int x = cx + dx;
+			if (!periodicX && (x < 0 || x >= mx)) {
+				continue;
+			}
+			x = (x + mx) % mx;
+			for (int dy = Math.max(-reachY, lowY); dy <= Math.min(reachY, highY); dy++) {
+				int y = cy + dy;
+				if (!periodicY && (y < 0 || y >= my)) {
+					continue;
+				}
+				int c = x * my + (y + my) % my;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int q = cellParticles[k];
+					if (dist2(px, py, q) < r2) {
+						if (found < out.length) {
+							out[found] = q;
+						}
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	public int kNearest(Point probe, int k, int[] out, double[] dist2) {
+		return kNearest(probe.x, probe.y, k, out, dist2);
+	}
+
+	/**
+	 * Writes to out the store indices of the k particles nearest to (px, py),
+	 * nearest first, and their squared distances to dist2. Rings of cells are
+	 * searched outwards until no unvisited cell can hold a nearer particle.
+	 *
+	 * @return min(k, N), the number of particles written.
+	 */
+	public int kNearest(double px, double py, int k, int[] out, double[] dist2) {
+		if (out.length < k || dist2.length < k) {
+			throw new IllegalArgumentException("Output arrays shorter than k = " + k);
+		}
+		px = wrap(px, lx, periodicX);
+		py = wrap(py, ly, periodicY);
+		int cx = cellOf(px, cellLengthX, mx);
+		int cy = cellOf(py, cellLengthY, my);
+		int found = 0;
+		int rings = Math.max(Math.max(-lowX, highX), Math.max(-lowY, highY));
+		double shortSide = Math.min(cellLengthX, cellLengthY);
+		for (int s = 0; s <= rings && k > 0; s++) {
+			// particles in ring s + 1 and beyond are at least s short cell sides away
+			double bound = s * shortSide;
+			for (int dx = Math.max(-s, lowX); dx <= Math.min(s, highX); dx++) {
+				if (dx == -s || dx == s) {
+					for (int dy = Math.max(-s, lowY); dy <= Math.min(s, highY); dy++) {
+						found = nearestInCell(cx + dx, cy + dy, px, py, k, found, out, dist2);
+					}
+				} else {
+					if (-s >= lowY) {
+						found = nearestInCell(cx + dx, cy - s, px, py, k, found, out, dist2);
+					}
+					if (s <= highY) {
+						found = nearestInCell(cx + dx, cy + s, px, py, k, found, out, dist2);
+					}
+				}
+			}
+			if (found == k && dist2[k - 1] <= bound * bound) {
+				break;
+			}
+		}
+		return found;
+	}
+
+	private int nearestInCell(int x, int y, double px, double py, int k, int found, int[] out, double[] dist2) {
+		if ((!periodicX && (x < 0 || x >= mx)) || (!periodicY && (y < 0 || y >= my))) {
+			return found;
+		}
+		int c = (x + mx) % mx * my + (y + my) % my;
+		for (int a = cellStart[c]; a < cellStart[c + 1]; a++) {
+			int q = cellParticles[a];
+			double d2 = dist2(px, py, q);
+			if (found < k || d2 < dist2[found - 1]) {
+				found = insert(q, d2, found, k, out, dist2);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Inserts q into the first found entries, kept sorted by distance and
+	 * capped at k.
+	 */
+	private static int insert(int q, double d2, int found, int k, int[] out, double[] dist2) {
+		int i = found < k ? found++ : k - 1;
+		while (i > 0 && dist2[i - 1] > d2) {
+			out[i] = out[i - 1];
+			dist2[i] = dist2[i - 1];
+			i--;
+		}
+		out[i] = q;
+		dist2[i] = d2;
+		return found;
+	}
+
+	private double dist2(double px, double py, int q) {
+		double dx = xs[q] - px;
+		double dy = ys[q] - py;
+		if (periodicX) {
+			dx = PairKernel.minimumImage(dx, lx);
+		}
+		if (periodicY) {
+			dy = PairKernel.minimumImage(dy, ly);
+		}
+		return dx * dx + dy * dy;
+	}
+
+	private static double wrap(double coordinate, double l, boolean periodic) {
+		if (periodic && (coordinate < 0 || coordinate >= l)) {
+			coordinate -= Math.floor(coordinate / l) * l;
+		}
+		return coordinate;
+	}
+
+	private static int cellOf(double coordinate, double cellLength, int m) {
+		return Math.max(0, Math.min((int) (coordinate / cellLength), m - 1));
+	}
+
+}
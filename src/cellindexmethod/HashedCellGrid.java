@@ -0,0 +1,185 @@
+package cellindexmethod;
+
+import model.ParticleStore;
+
+/**
+ * Cell index method over a spatial hash: only occupied cells are stored, keyed
+ * by their packed (x, y) cell coordinates. With open bounds the particles can
+ * lie anywhere, including negative coordinates, and memory grows with the
+ * number of occupied cells instead of the area of the domain.
+ */
+public class HashedCellGrid implements NeighbourFinder {
+
+	private static final int[] DX = { 0, 1, 1, 1 };
+	private static final int[] DY = { 1, 1, 0, -1 };
+
+	private ParticleStore store;
+	private NeighbourList neighbourList;
+	private LongIntHashMap slots;
+	private int[] slotX;
+	private int[] slotY;
+	private int[] slotStart;
+	private int[] slotParticles;
+	private double cellLength;
+	private boolean periodicBounds;
+	private int m;
+	private double rc;
+	private double l;
+
+	/**
+	 * Open bounds with arbitrary extents.
+	 * 
+	 * @param cellLength - it has to exceed rc plus the two largest radii.
+	 */
+	public HashedCellGrid(ParticleStore store, double cellLength, double rc) {
+		this.store = store;
+		this.cellLength = cellLength;
+		this.rc = rc;
+		this.periodicBounds = false;
+		if (!(cellLength > CellIndexMethod.minCellLength(store.getRadius(), rc))) {
+			throw new IllegalArgumentException();
+		}
+		fillCells();
+		fillNeighbours();
+	}
+
+	/**
+	 * Same domain as {@link CellIndexMethod}: an L x L box split into M x M
+	 * cells, of which only the occupied ones are stored.
+	 */
+	public HashedCellGrid(ParticleStore store, double l, int m, double rc, boolean periodicBounds) {
+		this.store = store;
+		this.cellLength = l / m;
+		this.l = l;
+		this.m = m;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		if (!(cellLength > CellIndexMethod.minCellLength(store.getRadius(), rc))) {
+			throw new IllegalArgumentException();
+		}
+		fillCells();
+		fillNeighbours();
+	}
+
+	@Override
+	public NeighbourList getNeighbourList() {
+		return neighbourList;
+	}
+
+	@Override
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	public int getOccupiedCells() {
+		return slots.size();
+	}
+
+	static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	private int cellOf(double coordinate) {
+		double cell = Math.floor(coordinate / cellLength);
+		if (m > 0) {
+			return (int) Math.max(0, Math.min(cell, m - 1));
+		}
+		if (cell < Integer.MIN_VALUE + 2 || cell > Integer.MAX_VALUE - 2) {
+			throw new IllegalArgumentException("Coordinate out of range: " + coordinate);
+		}
+		return (int) cell;
+	}
+
+	private void fillCells() {
+		int n = store.size();
+		double[] x = store.getX();
+		double[] y = store.getY();
+		slots = new LongIntHashMap(Math.max(16, n / 4));
+		int[] slotOfParticle = new int[n];
+		slotX = new int[Math.max(1, n)];
+		slotY = new int[Math.max(1, n)];
+		int[] counts = new int[Math.max(1, n) + 1];
+		for (int i = 0; i < n; i++) {
+			int cx = cellOf(x[i]);
+			int cy = cellOf(y[i]);
+			int slot = slots.putIfAbsent(key(cx, cy), slots.size());
+			if (slot == LongIntHashMap.MISSING) {
+				slot = slots.size() - 1;
+				slotX[slot] = cx;
+				slotY[slot] = cy;
+			}
+			slotOfParticle[i] = slot;
+			counts[slot + 1]++;
+		}
+		int occupied = slots.size();
+		slotStart = counts;
+		for (int s = 0; s < occupied; s++) {
+			slotStart[s + 1] += slotStart[s];
+		}
+		slotParticles = new int[n];
+		int[] next = slotStart.clone();
+		for (int i = 0; i < n; i++) {
+			slotParticles[next[slotOfParticle[i]]++] = i;
+		}
+	}
+
+	private void fillNeighbours() {
+		PairBuffer pairs = new PairBuffer(store.size());
+		boolean dedup = periodicBounds && m < 3;
+		int[] neighbourSlots = new int[DX.length];
+		for (int s = 0; s < slots.size(); s++) {
+			int count = 0;
+			for (int k = 0; k < DX.length; k++) {
+				int xx = slotX[s] + DX[k];
+				int yy = slotY[s] + DY[k];
+				if (periodicBounds) {
+					xx = (xx + m) % m;
+					yy = (yy + m) % m;
+					if (dedup && (xx * m + yy <= slotX[s] * m + slotY[s])) {
+						continue;
+					}
+				} else if (m > 0 && (xx >= m || yy < 0 || yy >= m)) {
+					continue;
+				}
+				int ns = slots.get(key(xx, yy));
+				if (ns == LongIntHashMap.MISSING || contains(neighbourSlots, count, ns)) {
+					continue;
+				}
+				neighbourSlots[count++] = ns;
+			}
+			int end = slotStart[s + 1];
+			for (int a = slotStart[s]; a < end; a++) {
+				int p = slotParticles[a];
+				for (int b = a + 1; b < end; b++) {
+					addNeighbour(pairs, p, slotParticles[b]);
+				}
+				for (int k = 0; k < count; k++) {
+					int ns = neighbourSlots[k];
+					for (int b = slotStart[ns]; b < slotStart[ns + 1]; b++) {
+						addNeighbour(pairs, p, slotParticles[b]);
+					}
+				}
+			}
+		}
+		neighbourList = NeighbourList.fromPairs(store.size(), pairs);
+	}
+
+	private static boolean contains(int[] values, int count, int value) {
+		for (int k = 0; k < count; k++) {
+			if (values[k] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addNeighbour(PairBuffer pairs, int p, int q) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] radius = store.getRadius();
+		if (PairKernel.areNeighbours(x[p], y[p], radius[p], x[q], y[q], radius[q], rc, l, periodicBounds)) {
+			pairs.add(p, q);
+		}
+	}
+
+}
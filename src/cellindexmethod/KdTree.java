@@ -0,0 +1,326 @@
+package cellindexmethod;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.ParticleStore;
+
+/**
+ * Neighbour search on a k-d tree, for clustered inputs where a uniform grid
+ * puts most particles in a few cells. Its cost follows the particles rather
+ * than the box.
+ *
+ * The tree has no node objects. Coordinates, radii and store indices are
+ * copied into flat arrays and reordered in place by median selection: the
+ * node of a range [lo, hi) is the particle at its middle position, the left
+ * subtree is [lo, mid) and the right one (mid, hi), and the split axis is kept
+ * in a byte per position. Ranges of at most LEAF_SIZE particles are leaves.
+ *
+ * Every particle queries the tree with radius rc + its radius + the largest
+ * radius, and only particles at later tree positions are reported, so every
+ * pair is found once. Pairs are tested with the same cutoff and minimum-image
+ * convention as {@link CellIndexMethod}.
+ */
+public class KdTree implements NeighbourFinder {
+
+	public static final int LEAF_SIZE = 8;
+
+	/*
+	 * Ranges smaller than this are built, and query chunks are processed, on
+	 * a single thread.
+	 */
+	private static final int PARALLEL_SIZE = 1 << 13;
+
+	private final ParticleStore store;
+	private final double l;
+	private final double rc;
+	private final boolean periodicBounds;
+	private final ForkJoinPool pool;
+	private final int n;
+	private final double[] tx;
+	private final double[] ty;
+	private final double[] tr;
+	private final int[] index;
+	private final byte[] axis;
+	private final double maxRadius;
+	private double xMin, xMax, yMin, yMax;
+	private NeighbourList neighbourList;
+
+	public KdTree(ParticleStore store, double l, double rc, boolean periodicBounds) {
+		this(store, l, rc, periodicBounds, null);
+	}
+
+	/**
+	 * @param pool - pool used to build and query the tree in parallel, or null
+	 *             to do both on the calling thread.
+	 */
+	public KdTree(ParticleStore store, double l, double rc, boolean periodicBounds, ForkJoinPool pool) {
+		if (periodicBounds && !(l > CellIndexMethod.minCellLength(store.getRadius(), rc))) {
+			throw new IllegalArgumentException();
+		}
+		this.store = store;
+		this.l = l;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		this.pool = pool;
+		n = store.size();
+		tx = store.getX().clone();
+		ty = store.getY().clone();
+		tr = store.getRadius().clone();
+		index = new int[n];
+		axis = new byte[n];
+		xMin = yMin = Double.POSITIVE_INFINITY;
+		xMax = yMax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			index[i] = i;
+			xMin = Math.min(xMin, tx[i]);
+			xMax = Math.max(xMax, tx[i]);
+			yMin = Math.min(yMin, ty[i]);
+			yMax = Math.max(yMax, ty[i]);
+		}
+		maxRadius = store.maxRadius();
+		if (pool != null && n > PARALLEL_SIZE) {
+			pool.invoke(new BuildTask(0, n, xMin, xMax, yMin, yMax));
+		} else {
+			build(0, n, xMin, xMax, yMin, yMax);
+		}
+	}
+
+	@Override
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	private void build(int lo, int hi, double x0, double x1, double y0, double y1) {
+		while (hi - lo > LEAF_SIZE) {
+			int mid = split(lo, hi, x0, x1, y0, y1);
+			double s = axis[mid] == 0 ? tx[mid] : ty[mid];
+			if (axis[mid] == 0) {
+				build(lo, mid, x0, s, y0, y1);
+				x0 = s;
+			} else {
+				build(lo, mid, x0, x1, y0, s);
+				y0 = s;
+			}
+			lo = mid + 1;
+		}
+	}
+
+	/**
+	 * Splits [lo, hi) across the longer side of its box around the median.
+	 *
+	 * @return the position of the median.
+	 */
+	private int split(int lo, int hi, double x0, double x1, double y0, double y1) {
+		int mid = (lo + hi) >>> 1;
+		byte ax = (byte) (x1 - x0 >= y1 - y0 ? 0 : 1);
+		select(lo, hi - 1, mid, ax == 0 ? tx : ty);
+		axis[mid] = ax;
+		return mid;
+	}
+
+	/**
+	 * Reorders [lo, hi] so that position k holds the value it would hold if
+	 * sorted, with no larger value before it and no smaller one after it.
+	 */
+	private void select(int lo, int hi, int k, double[] key) {
+		while (hi > lo) {
+			double pivot = key[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (key[i] < pivot) {
+					i++;
+				}
+				while (key[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int a, int b) {
+		double x = tx[a];
+		tx[a] = tx[b];
+		tx[b] = x;
+		double y = ty[a];
+		ty[a] = ty[b];
+		ty[b] = y;
+		double r = tr[a];
+		tr[a] = tr[b];
+		tr[b] = r;
+		int i = index[a];
+		index[a] = index[b];
+		index[b] = i;
+	}
+
+	private class BuildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int lo, hi;
+		private final double x0, x1, y0, y1;
+
+		BuildTask(int lo, int hi, double x0, double x1, double y0, double y1) {
+			this.lo = lo;
+			this.hi = hi;
+			this.x0 = x0;
+			this.x1 = x1;
+			this.y0 = y0;
+			this.y1 = y1;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= PARALLEL_SIZE) {
+				build(lo, hi, x0, x1, y0, y1);
+				return;
+			}
+			int mid = split(lo, hi, x0, x1, y0, y1);
+			if (axis[mid] == 0) {
+				invokeAll(new BuildTask(lo, mid, x0, tx[mid], y0, y1), new BuildTask(mid + 1, hi, tx[mid], x1, y0, y1));
+			} else {
+				invokeAll(new BuildTask(lo, mid, x0, x1, y0, ty[mid]), new BuildTask(mid + 1, hi, x0, x1, ty[mid], y1));
+			}
+		}
+	}
+
+	/**
+	 * Visits every neighbour pair once, on the calling thread, without storing
+	 * any of them.
+	 */
+	public void forEachPair(PairConsumer consumer) {
+		queryRange(0, n, consumer);
+	}
+
+	private void queryRange(int from, int to, PairConsumer consumer) {
+		for (int a = from; a < to; a++) {
+			double r = rc + tr[a] + maxRadius;
+			query(a, r * r, 0, n, xMin, xMax, yMin, yMax, consumer);
+		}
+	}
+
+	/**
+	 * Reports the neighbours of the particle at position a among positions
+	 * greater than a in [lo, hi), a range whose particles lie in the given box.
+	 */
+	private void query(int a, double reach2, int lo, int hi, double x0, double x1, double y0, double y1,
+			PairConsumer consumer) {
+		if (hi <= a + 1) {
+			return;
+		}
+		double gx = gap(tx[a], x0, x1);
+		double gy = gap(ty[a], y0, y1);
+		if (gx * gx + gy * gy >= reach2) {
+			return;
+		}
+		if (hi - lo <= LEAF_SIZE) {
+			for (int b = Math.max(lo, a + 1); b < hi; b++) {
+				addNeighbour(consumer, a, b);
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (mid > a) {
+			addNeighbour(consumer, a, mid);
+		}
+		if (axis[mid] == 0) {
+			query(a, reach2, lo, mid, x0, tx[mid], y0, y1, consumer);
+			query(a, reach2, mid + 1, hi, tx[mid], x1, y0, y1, consumer);
+		} else {
+			query(a, reach2, lo, mid, x0, x1, y0, ty[mid], consumer);
+			query(a, reach2, mid + 1, hi, x0, x1, ty[mid], y1, consumer);
+		}
+	}
+
+	/**
+	 * @return the distance from coordinate c to the interval [c0, c1], through
+	 *         the boundary when it is periodic.
+	 */
+	private double gap(double c, double c0, double c1) {
+		double d = c < c0 ? c0 - c : c > c1 ? c - c1 : 0;
+		if (periodicBounds && d > 0) {
+			d = Math.min(d, c < c0 ? c + l - c1 : c0 + l - c);
+		}
+		return d;
+	}
+
+	private void addNeighbour(PairConsumer consumer, int a, int b) {
+		double dx = tx[b] - tx[a];
+		double dy = ty[b] - ty[a];
+		if (periodicBounds) {
+			dx = PairKernel.minimumImage(dx, l);
+			dy = PairKernel.minimumImage(dy, l);
+		}
+		double dist2 = dx * dx + dy * dy;
+		double r = rc + tr[a] + tr[b];
+		if (dist2 < r * r) {
+			consumer.accept(index[a], index[b], dx, dy, dist2);
+		}
+	}
+
+	private void fillNeighbours() {
+		PairBuffer[] buffers;
+		if (pool == null || pool.getParallelism() == 1 || n <= PARALLEL_SIZE) {
+			buffers = new PairBuffer[] { new PairBuffer(n) };
+			forEachPair(buffers[0]);
+		} else {
+			/*
+			 * Early positions query more of the tree than late ones, so the
+			 * chunks are many and small.
+			 */
+			int chunks = Math.min((n + LEAF_SIZE - 1) / LEAF_SIZE, pool.getParallelism() * 16);
+			QueryTask[] tasks = new QueryTask[chunks];
+			buffers = new PairBuffer[chunks];
+			for (int c = 0; c < chunks; c++) {
+				buffers[c] = new PairBuffer(n / chunks);
+				tasks[c] = new QueryTask((int) ((long) c * n / chunks), (int) ((long) (c + 1) * n / chunks), buffers[c]);
+				pool.execute(tasks[c]);
+			}
+			for (QueryTask task : tasks) {
+				task.join();
+			}
+		}
+		neighbourList = NeighbourList.fromPairs(n, buffers);
+	}
+
+	private class QueryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final PairBuffer pairs;
+
+		QueryTask(int from, int to, PairBuffer pairs) {
+			this.from = from;
+			this.to = to;
+			this.pairs = pairs;
+		}
+
+		@Override
+		protected void compute() {
+			queryRange(from, to, pairs);
+		}
+	}
+
+	/**
+	 * The neighbour search runs on the first call; the constructor only builds
+	 * the tree.
+	 */
+	@Override
+	public NeighbourList getNeighbourList() {
+		if (neighbourList == null) {
+			fillNeighbours();
+		}
+		return neighbourList;
+	}
+
+}
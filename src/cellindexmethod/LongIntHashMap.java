@@ -0,0 +1,122 @@
+package cellindexmethod;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from long keys to non-negative int values, with
+ * linear probing and no boxing.
+ */
+class LongIntHashMap {
+
+	static final int MISSING = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	LongIntHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, MISSING);
+		mask = capacity - 1;
+	}
+
+	int get(long key) {
+		int slot = slot(key);
+		while (values[slot] != MISSING) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return MISSING;
+	}
+
+	/**
+	 * @return the value already mapped to key, or MISSING after mapping it to
+	 *         value.
+	 */
+	int putIfAbsent(long key, int value) {
+		int slot = slot(key);
+		while (values[slot] != MISSING) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return MISSING;
+	}
+
+	/**
+	 * @return the value that was mapped to key, or MISSING. The rest of the
+	 *         probe run is shifted back, so removals leave no tombstones.
+	 */
+	int remove(long key) {
+		int slot = slot(key);
+		while (values[slot] != MISSING) {
+			if (keys[slot] == key) {
+				int value = values[slot];
+				shiftBack(slot);
+				size--;
+				return value;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return MISSING;
+	}
+
+	private void shiftBack(int hole) {
+		int slot = (hole + 1) & mask;
+		while (values[slot] != MISSING) {
+			int home = slot(keys[slot]);
+			// the entry can fill the hole unless its home lies between the two
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				keys[hole] = keys[slot];
+				values[hole] = values[slot];
+				hole = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		values[hole] = MISSING;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		Arrays.fill(values, MISSING);
+		mask = keys.length - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldValues[k] != MISSING) {
+				int slot = slot(oldKeys[k]);
+				while (values[slot] != MISSING) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[k];
+				values[slot] = oldValues[k];
+			}
+		}
+	}
+
+	private int slot(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+}
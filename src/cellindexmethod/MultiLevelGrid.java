@@ -0,0 +1,193 @@
+package cellindexmethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.ParticleStore;
+
+/**
+ * Neighbour search for polydisperse systems. Particles are split into radius
+ * classes that halve from the largest radius down, and every class gets its
+ * own {@link CellIndexMethod} grid sized for its own radii. Pairs inside a
+ * class come from that grid; pairs across classes are found by querying the
+ * grid of the smaller class around each particle of the larger one.
+ */
+public class MultiLevelGrid implements NeighbourFinder {
+
+	public static final int DEFAULT_MAX_LEVELS = 8;
+
+	private ParticleStore store;
+	private List<Level> levels;
+	private NeighbourList neighbourList;
+	private boolean periodicBounds;
+	private double rc;
+	private double l;
+
+	public MultiLevelGrid(ParticleStore store, double l, double rc, boolean periodicBounds) {
+		this(store, l, rc, periodicBounds, DEFAULT_MAX_LEVELS);
+	}
+
+	public MultiLevelGrid(ParticleStore store, double l, double rc, boolean periodicBounds, int maxLevels) {
+		if (maxLevels < 1) {
+			throw new IllegalArgumentException("maxLevels must be positive");
+		}
+		this.store = store;
+		this.l = l;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		fillLevels(maxLevels);
+		fillNeighbours();
+	}
+
+	@Override
+	public NeighbourList getNeighbourList() {
+		return neighbourList;
+	}
+
+	@Override
+	public ParticleStore getStore() {
+		return store;
+	}
+
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	/**
+	 * @return cells per side of every non-empty level, largest radii first.
+	 */
+	public int[] getLevelM() {
+		int[] m = new int[levels.size()];
+		for (int k = 0; k < m.length; k++) {
+			m[k] = levels.get(k).cim.getM();
+		}
+		return m;
+	}
+
+	private void fillLevels(int maxLevels) {
+		double[] radius = store.getRadius();
+		double maxRadius = store.maxRadius();
+		int[] levelOf = new int[store.size()];
+		int[] counts = new int[maxLevels];
+		for (int i = 0; i < store.size(); i++) {
+			int level = maxLevels - 1;
+			if (radius[i] > 0) {
+				level = (int) Math.min(maxLevels - 1, Math.floor(log2(maxRadius / radius[i])));
+			}
+			levelOf[i] = level;
+			counts[level]++;
+		}
+		levels = new ArrayList<>();
+		for (int level = 0; level < maxLevels; level++) {
+			if (counts[level] == 0) {
+				continue;
+			}
+			int[] members = new int[counts[level]];
+			int k = 0;
+			for (int i = 0; i < store.size(); i++) {
+				if (levelOf[i] == level) {
+					members[k++] = i;
+				}
+			}
+			levels.add(new Level(members));
+		}
+	}
+
+	private static double log2(double value) {
+		return Math.log(value) / Math.log(2);
+	}
+
+	private void fillNeighbours() {
+		PairBuffer pairs = new PairBuffer(store.size());
+		for (int j = 0; j < levels.size(); j++) {
+			Level level = levels.get(j);
+			NeighbourList local = level.cim.getNeighbourList();
+			for (int a = 0; a < local.size(); a++) {
+				for (int k = 0; k < local.count(a); k++) {
+					int b = local.neighbour(a, k);
+					if (a < b) {
+						pairs.add(level.members[a], level.members[b]);
+					}
+				}
+			}
+			for (int i = j + 1; i < levels.size(); i++) {
+				for (int p : level.members) {
+					crossLevel(pairs, p, levels.get(i));
+				}
+			}
+		}
+		neighbourList = NeighbourList.fromPairs(store.size(), pairs);
+	}
+
+	/**
+	 * Tests particle p against every particle of a level of smaller radii,
+	 * visiting the cells within rc + radius(p) + maxRadius(level) of p.
+	 */
+	private void crossLevel(PairBuffer pairs, int p, Level level) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] radius = store.getRadius();
+		CellGrid grid = level.cim.getGrid();
+		int m = grid.getMx();
+		int[] cellStart = grid.getCellStart();
+		int[] cellParticles = grid.getCellParticles();
+		int reach = (int) Math.ceil((rc + radius[p] + level.maxRadius) / grid.getCellLengthX());
+		int cx = grid.cellOfX(x[p]);
+		int cy = grid.cellOfY(y[p]);
+		int fromX, toX, fromY, toY;
+		if (periodicBounds && 2 * reach + 1 >= m) {
+			fromX = fromY = 0;
+			toX = toY = m - 1;
+		} else if (periodicBounds) {
+			fromX = cx - reach;
+			toX = cx + reach;
+			fromY = cy - reach;
+			toY = cy + reach;
+		} else {
+			fromX = Math.max(0, cx - reach);
+			toX = Math.min(m - 1, cx + reach);
+			fromY = Math.max(0, cy - reach);
+			toY = Math.min(m - 1, cy + reach);
+		}
+		for (int xx = fromX; xx <= toX; xx++) {
+			for (int yy = fromY; yy <= toY; yy++) {
+				int c = ((xx + m) % m) * m + (yy + m) % m;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int q = level.members[cellParticles[k]];
+					if (PairKernel.areNeighbours(x[p], y[p], radius[p], x[q], y[q], radius[q], rc, l,
+							periodicBounds)) {
+						pairs.add(p, q);
+					}
+				}
+			}
+		}
+	}
+
+	private class Level {
+
+		private final int[] members;
+		private final double maxRadius;
+		private final CellIndexMethod cim;
+
+		Level(int[] members) {
+			this.members = members;
+			int n = members.length;
+			double[] x = new double[n];
+			double[] y = new double[n];
+			double[] radius = new double[n];
+			int[] id = new int[n];
+			for (int k = 0; k < n; k++) {
+				int i = members[k];
+				x[k] = store.getX()[i];
+				y[k] = store.getY()[i];
+				radius[k] = store.getRadius()[i];
+				id[k] = store.getId()[i];
+			}
+			ParticleStore levelStore = new ParticleStore(x, y, radius, id);
+			this.maxRadius = levelStore.maxRadius();
+			int m = CellSizeTuner.optimalM(radius, l, rc);
+			this.cim = new CellIndexMethod(levelStore, l, m, rc, periodicBounds);
+		}
+	}
+
+}
@@ -0,0 +1,341 @@
+package cellindexmethod;
+
+import java.util.Arrays;
+
+import model.ParticleStore;
+
+/**
+ * Cell grid and neighbour sets that follow single-particle changes, for Monte
+ * Carlo style updates where rebuilding a {@link CellIndexMethod} per move would
+ * cost O(N).
+ *
+ * Particles live in slots, found by id through a hash table. Each cell keeps a
+ * doubly linked list of its slots (head, next, prev), so a particle leaves or
+ * joins a cell in O(1). Each slot keeps its own neighbour slots. A change only
+ * drops the entries of the particle's old neighbours and re-scans the 3 x 3
+ * cells around its new cell, so it costs O(local density).
+ */
+public class MutableCellGrid implements NeighbourFinder {
+
+	private static final int NONE = -1;
+
+	private final double l;
+	private final int m;
+	private final double cellLength;
+	private final double rc;
+	private final boolean periodicBounds;
+	private final int[] head;
+	private final LongIntHashMap slotOfId;
+	private final int[] stencil = new int[9];
+	private double maxRadius;
+	private int size;
+	private int slots;
+	private int freeHead = NONE;
+	private double[] x;
+	private double[] y;
+	private double[] radius;
+	private int[] id;
+	private int[] cell;
+	private int[] next;
+	private int[] prev;
+	private int[][] neighbours;
+	private int[] neighbourCount;
+
+	public MutableCellGrid(double l, int m, double rc, boolean periodicBounds) {
+		this.l = l;
+		this.m = m;
+		this.cellLength = l / m;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		head = new int[m * m];
+		Arrays.fill(head, NONE);
+		slotOfId = new LongIntHashMap(16);
+		x = new double[16];
+		y = new double[16];
+		radius = new double[16];
+		id = new int[16];
+		cell = new int[16];
+		next = new int[16];
+		prev = new int[16];
+		neighbours = new int[16][];
+		neighbourCount = new int[16];
+	}
+
+	/**
+	 * Starts from every particle of store.
+	 */
+	public MutableCellGrid(ParticleStore store, double l, int m, double rc, boolean periodicBounds) {
+		this(l, m, rc, periodicBounds);
+		for (int i = 0; i < store.size(); i++) {
+			insert(store.getId()[i], store.getX()[i], store.getY()[i], store.getRadius()[i]);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if id is already in the grid, or the
+	 *                                  radius makes the cells shorter than rc
+	 *                                  plus the two largest radii.
+	 */
+	public void insert(int particleId, double px, double py, double r) {
+		if (!(cellLength > rc + r + Math.max(r, maxRadius))) {
+			throw new IllegalArgumentException("Radius " + r + " too large for cells of length " + cellLength);
+		}
+		int p = newSlot();
+		if (slotOfId.putIfAbsent(particleId, p) != LongIntHashMap.MISSING) {
+			freeSlot(p);
+			throw new IllegalArgumentException("Duplicate id: " + particleId);
+		}
+		maxRadius = Math.max(maxRadius, r);
+		id[p] = particleId;
+		radius[p] = r;
+		neighbourCount[p] = 0;
+		place(p, px, py);
+		size++;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if id is not in the grid.
+	 */
+	public void remove(int particleId) {
+		int p = slotOfId.remove(particleId);
+		if (p == LongIntHashMap.MISSING) {
+			throw new IllegalArgumentException("Unknown id: " + particleId);
+		}
+		dropNeighbours(p);
+		unlink(p);
+		freeSlot(p);
+		size--;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if id is not in the grid.
+	 */
+	public void move(int particleId, double px, double py) {
+		int p = slotOf(particleId);
+		dropNeighbours(p);
+		unlink(p);
+		place(p, px, py);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int particleId) {
+		return slotOfId.get(particleId) != LongIntHashMap.MISSING;
+	}
+
+	public int getNeighbourCount(int particleId) {
+		return neighbourCount[slotOf(particleId)];
+	}
+
+	/**
+	 * Writes the ids of the neighbours of particleId to out.
+	 *
+	 * @return the number of neighbours; only the first out.length are written
+	 *         when there are more.
+	 */
+	public int getNeighbours(int particleId, int[] out) {
+		int p = slotOf(particleId);
+		int count = neighbourCount[p];
+		for (int k = 0; k < Math.min(count, out.length); k++) {
+			out[k] = id[neighbours[p][k]];
+		}
+		return count;
+	}
+
+	/**
+	 * @return a copy of the current particles, in slot order.
+	 */
+	@Override
+	public ParticleStore getStore() {
+		double[] xs = new double[size];
+		double[] ys = new double[size];
+		double[] radii = new double[size];
+		int[] ids = new int[size];
+		int i = 0;
+		for (int p = 0; p < slots; p++) {
+			if (cell[p] != NONE) {
+				xs[i] = x[p];
+				ys[i] = y[p];
+				radii[i] = radius[p];
+				ids[i] = id[p];
+				i++;
+			}
+		}
+		return new ParticleStore(xs, ys, radii, ids);
+	}
+
+	/**
+	 * @return the current neighbours, indexed like {@link #getStore()}.
+	 */
+	@Override
+	public NeighbourList getNeighbourList() {
+		int[] index = new int[slots];
+		int[] offsets = new int[size + 1];
+		int i = 0;
+		for (int p = 0; p < slots; p++) {
+			if (cell[p] != NONE) {
+				index[p] = i;
+				offsets[i + 1] = offsets[i] + neighbourCount[p];
+				i++;
+			}
+		}
+		int[] neighbourIds = new int[offsets[size]];
+		for (int p = 0; p < slots; p++) {
+			if (cell[p] != NONE) {
+				int from = offsets[index[p]];
+				for (int k = 0; k < neighbourCount[p]; k++) {
+					neighbourIds[from + k] = index[neighbours[p][k]];
+				}
+			}
+		}
+		return new NeighbourList(offsets, neighbourIds);
+	}
+
+	private int slotOf(int particleId) {
+		int p = slotOfId.get(particleId);
+		if (p == LongIntHashMap.MISSING) {
+			throw new IllegalArgumentException("Unknown id: " + particleId);
+		}
+		return p;
+	}
+
+	/**
+	 * Puts p at (px, py), links it into its cell and finds its neighbours in
+	 * the cells around it.
+	 */
+	private void place(int p, double px, double py) {
+		if (periodicBounds) {
+			px -= Math.floor(px / l) * l;
+			py -= Math.floor(py / l) * l;
+		}
+		x[p] = px;
+		y[p] = py;
+		int cx = cellOf(px);
+		int cy = cellOf(py);
+		int c = cx * m + cy;
+		cell[p] = c;
+		prev[p] = NONE;
+		next[p] = head[c];
+		if (head[c] != NONE) {
+			prev[head[c]] = p;
+		}
+		head[c] = p;
+
+		int count = stencil(cx, cy);
+		for (int k = 0; k < count; k++) {
+			for (int q = head[stencil[k]]; q != NONE; q = next[q]) {
+				if (q != p && PairKernel.areNeighbours(px, py, radius[p], x[q], y[q], radius[q], rc, l,
+						periodicBounds)) {
+					addNeighbour(p, q);
+					addNeighbour(q, p);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills stencil with the distinct cells around (cx, cy), itself included.
+	 *
+	 * @return the number of cells.
+	 */
+	private int stencil(int cx, int cy) {
+		int count = 0;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				int xx = cx + dx;
+				int yy = cy + dy;
+				if (!periodicBounds && (xx < 0 || xx >= m || yy < 0 || yy >= m)) {
+					continue;
+				}
+				int c = (xx + m) % m * m + (yy + m) % m;
+				boolean seen = false;
+				for (int k = 0; k < count && !seen; k++) {
+					seen = stencil[k] == c;
+				}
+				if (!seen) {
+					stencil[count++] = c;
+				}
+			}
+		}
+		return count;
+	}
+
+	private void unlink(int p) {
+		int c = cell[p];
+		if (prev[p] != NONE) {
+			next[prev[p]] = next[p];
+		} else {
+			head[c] = next[p];
+		}
+		if (next[p] != NONE) {
+			prev[next[p]] = prev[p];
+		}
+	}
+
+	/**
+	 * Removes p from the neighbours of each of its neighbours, and clears its
+	 * own.
+	 */
+	private void dropNeighbours(int p) {
+		for (int k = 0; k < neighbourCount[p]; k++) {
+			int q = neighbours[p][k];
+			int[] list = neighbours[q];
+			int last = --neighbourCount[q];
+			for (int j = 0; j <= last; j++) {
+				if (list[j] == p) {
+					list[j] = list[last];
+					break;
+				}
+			}
+		}
+		neighbourCount[p] = 0;
+	}
+
+	private void addNeighbour(int p, int q) {
+		int[] list = neighbours[p];
+		if (list == null) {
+			list = neighbours[p] = new int[8];
+		} else if (neighbourCount[p] == list.length) {
+			list = neighbours[p] = Arrays.copyOf(list, list.length * 2);
+		}
+		list[neighbourCount[p]++] = q;
+	}
+
+	private int newSlot() {
+		if (freeHead != NONE) {
+			int p = freeHead;
+			freeHead = next[p];
+			return p;
+		}
+		if (slots == x.length) {
+			int capacity = slots * 2;
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			radius = Arrays.copyOf(radius, capacity);
+			id = Arrays.copyOf(id, capacity);
+			cell = Arrays.copyOf(cell, capacity);
+			next = Arrays.copyOf(next, capacity);
+			prev = Arrays.copyOf(prev, capacity);
+			neighbours = Arrays.copyOf(neighbours, capacity);
+			neighbourCount = Arrays.copyOf(neighbourCount, capacity);
+		}
+		return slots++;
+	}
+
+	/**
+	 * Marks p free and chains it through next.
+	 */
+	private void freeSlot(int p) {
+		cell[p] = NONE;
+		neighbourCount[p] = 0;
+		next[p] = freeHead;
+		freeHead = p;
+	}
+
+	private int cellOf(double coordinate) {
+		return Math.max(0, Math.min((int) (coordinate / cellLength), m - 1));
+	}
+
+}
@@ -0,0 +1,15 @@
+package cellindexmethod;
+
+import model.ParticleStore;
+
+/**
+ * Common view of the neighbour search engines. The list is indexed like the
+ * store returned by {@link #getStore()}.
+ */
+public interface NeighbourFinder {
+
+	ParticleStore getStore();
+
+	NeighbourList getNeighbourList();
+
+}
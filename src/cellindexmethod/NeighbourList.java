@@ -0,0 +1,91 @@
+package cellindexmethod;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Particle;
+
+/**
+ * Neighbour result in compressed-sparse-row form. The neighbours of particle i
+ * are neighbourIds[offsets[i]] .. neighbourIds[offsets[i + 1] - 1], stored as
+ * indices into the particle store the finder was built from.
+ */
+public class NeighbourList {
+
+	private final int[] offsets;
+	private final int[] neighbourIds;
+
+	public NeighbourList(int[] offsets, int[] neighbourIds) {
+		this.offsets = offsets;
+		this.neighbourIds = neighbourIds;
+	}
+
+	/**
+	 * Builds a symmetric list out of unordered pairs: every pair (i, j) makes j a
+	 * neighbour of i and i a neighbour of j. Buffers are read in the given
+	 * order, so the result does not depend on how the pairs were split.
+	 */
+	static NeighbourList fromPairs(int n, PairBuffer... buffers) {
+		int[] offsets = new int[n + 1];
+		for (PairBuffer pairs : buffers) {
+			for (int k = 0; k < pairs.size(); k++) {
+				offsets[pairs.first(k) + 1]++;
+				offsets[pairs.second(k) + 1]++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] fill = new int[n];
+		int[] neighbourIds = new int[offsets[n]];
+		for (PairBuffer pairs : buffers) {
+			for (int k = 0; k < pairs.size(); k++) {
+				int i = pairs.first(k);
+				int j = pairs.second(k);
+				neighbourIds[offsets[i] + fill[i]++] = j;
+				neighbourIds[offsets[j] + fill[j]++] = i;
+			}
+		}
+		return new NeighbourList(offsets, neighbourIds);
+	}
+
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	public int count(int i) {
+		return offsets[i + 1] - offsets[i];
+	}
+
+	public int neighbour(int i, int k) {
+		return neighbourIds[offsets[i] + k];
+	}
+
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	public int[] getNeighbourIds() {
+		return neighbourIds;
+	}
+
+	/**
+	 * Adapter to the map representation; particles.get(i) must be the particle
+	 * stored at index i.
+	 */
+	public Map<Particle, Set<Particle>> toMap(List<Particle> particles) {
+		Map<Particle, Set<Particle>> neighbours = new HashMap<Particle, Set<Particle>>();
+		for (int i = 0; i < size(); i++) {
+			Set<Particle> set = new HashSet<Particle>();
+			for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+				set.add(particles.get(neighbourIds[k]));
+			}
+			neighbours.put(particles.get(i), set);
+		}
+		return neighbours;
+	}
+
+}
@@ -0,0 +1,216 @@
+package cellindexmethod;
+
+import model.DirectIntArray;
+import model.DirectLongArray;
+import model.OffHeapParticleStore;
+
+/**
+ * {@link CellIndexMethod} over an {@link OffHeapParticleStore}, for systems
+ * whose particles and neighbours do not fit in the heap. The cell lists and
+ * the neighbour list live off the heap too, and are freed by {@link #close()};
+ * the store stays open and belongs to the caller.
+ *
+ * The neighbour list is built in two sweeps, one counting the neighbours of
+ * every particle and one filling them in, so no pair is ever buffered.
+ * Particle indices are ints, so a store holds at most Integer.MAX_VALUE
+ * particles.
+ */
+public class OffHeapCellIndexMethod implements AutoCloseable {
+
+	private static final int[] DX = { 0, 0, 1, 1, 1 };
+	private static final int[] DY = { 0, 1, 1, 0, -1 };
+
+	private final OffHeapParticleStore store;
+	private final double l;
+	private final int m;
+	private final double rc;
+	private final boolean periodicBounds;
+	private final DirectLongArray cellStart;
+	private final DirectIntArray cellParticles;
+	private OffHeapNeighbourList neighbourList;
+
+	public OffHeapCellIndexMethod(OffHeapParticleStore store, double l, int m, double rc, boolean periodicBounds) {
+		if (store.size() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("At most " + Integer.MAX_VALUE + " particles");
+		}
+		if (l / m <= minCellLength(store, rc)) {
+			throw new IllegalArgumentException();
+		}
+		this.store = store;
+		this.l = l;
+		this.m = m;
+		this.rc = rc;
+		this.periodicBounds = periodicBounds;
+		long cells = (long) m * m;
+		int n = (int) store.size();
+		cellStart = new DirectLongArray(cells + 1);
+		cellParticles = new DirectIntArray(n);
+		try (DirectLongArray next = new DirectLongArray(cells)) {
+			double cellLength = l / m;
+			for (int i = 0; i < n; i++) {
+				long c = cellOf(i, cellLength);
+				cellStart.set(c + 1, cellStart.get(c + 1) + 1);
+			}
+			for (long c = 0; c < cells; c++) {
+				cellStart.set(c + 1, cellStart.get(c + 1) + cellStart.get(c));
+				next.set(c, cellStart.get(c));
+			}
+			for (int i = 0; i < n; i++) {
+				long c = cellOf(i, cellLength);
+				long k = next.get(c);
+				cellParticles.set(k, i);
+				next.set(c, k + 1);
+			}
+		}
+	}
+
+	private long cellOf(int i, double cellLength) {
+		int x = Math.max(0, Math.min((int) (store.getX(i) / cellLength), m - 1));
+		int y = Math.max(0, Math.min((int) (store.getY(i) / cellLength), m - 1));
+		return (long) x * m + y;
+	}
+
+	private static double minCellLength(OffHeapParticleStore store, double rc) {
+		double max1 = 0;
+		double max2 = 0;
+		for (long i = 0; i < store.size(); i++) {
+			double radius = store.getRadius(i);
+			if (radius >= max1) {
+				max2 = max1;
+				max1 = radius;
+			} else if (radius >= max2) {
+				max2 = radius;
+			}
+		}
+		return rc + max1 + max2;
+	}
+
+	public int getM() {
+		return m;
+	}
+
+	public OffHeapParticleStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Visits every neighbour pair once, without storing any of them.
+	 */
+	public void forEachPair(PairConsumer consumer) {
+		boolean dedup = periodicBounds && m < 3;
+		long[] neighbourCells = new long[DX.length];
+		for (int x = 0; x < m; x++) {
+			for (int y = 0; y < m; y++) {
+				long c = (long) x * m + y;
+				long end = cellStart.get(c + 1);
+				if (cellStart.get(c) == end) {
+					continue;
+				}
+				int count = 0;
+				for (int k = 1; k < DX.length; k++) {
+					int xx = x + DX[k];
+					int yy = y + DY[k];
+					if (!periodicBounds && (xx >= m || yy < 0 || yy >= m)) {
+						continue;
+					}
+					xx = (xx + m) % m;
+					yy = (yy + m) % m;
+					long nc = (long) xx * m + yy;
+					if (dedup && (nc <= c || contains(neighbourCells, count, nc))) {
+						continue;
+					}
+					neighbourCells[count++] = nc;
+				}
+				for (long a = cellStart.get(c); a < end; a++) {
+					int p = cellParticles.get(a);
+					for (long b = a + 1; b < end; b++) {
+						addNeighbour(consumer, p, cellParticles.get(b));
+					}
+					for (int k = 0; k < count; k++) {
+						long to = cellStart.get(neighbourCells[k] + 1);
+						for (long b = cellStart.get(neighbourCells[k]); b < to; b++) {
+							addNeighbour(consumer, p, cellParticles.get(b));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean contains(long[] values, int count, long value) {
+		for (int k = 0; k < count; k++) {
+			if (values[k] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addNeighbour(PairConsumer consumer, int p, int q) {
+		double dx = store.getX(q) - store.getX(p);
+		double dy = store.getY(q) - store.getY(p);
+		if (periodicBounds) {
+			dx = PairKernel.minimumImage(dx, l);
+			dy = PairKernel.minimumImage(dy, l);
+		}
+		double dist2 = dx * dx + dy * dy;
+		double r = rc + store.getRadius(p) + store.getRadius(q);
+		if (dist2 < r * r) {
+			consumer.accept(p, q, dx, dy, dist2);
+		}
+	}
+
+	/**
+	 * The neighbour search runs on the first call. The list belongs to this
+	 * finder and is freed with it.
+	 */
+	public OffHeapNeighbourList getNeighbourList() {
+		if (neighbourList == null) {
+			fillNeighbours();
+		}
+		return neighbourList;
+	}
+
+	private void fillNeighbours() {
+		int n = (int) store.size();
+		final DirectLongArray offsets = new DirectLongArray(n + 1);
+		forEachPair(new PairConsumer() {
+			@Override
+			public void accept(int i, int j, double dx, double dy, double dist2) {
+				offsets.set(i + 1, offsets.get(i + 1) + 1);
+				offsets.set(j + 1, offsets.get(j + 1) + 1);
+			}
+		});
+		for (int i = 0; i < n; i++) {
+			offsets.set(i + 1, offsets.get(i + 1) + offsets.get(i));
+		}
+		final DirectIntArray neighbourIds = new DirectIntArray(offsets.get(n));
+		// offsets[i] is used as the fill cursor of i, leaving it at offsets[i + 1]
+		forEachPair(new PairConsumer() {
+			@Override
+			public void accept(int i, int j, double dx, double dy, double dist2) {
+				long ki = offsets.get(i);
+				neighbourIds.set(ki, j);
+				offsets.set(i, ki + 1);
+				long kj = offsets.get(j);
+				neighbourIds.set(kj, i);
+				offsets.set(j, kj + 1);
+			}
+		});
+		for (int i = n; i > 0; i--) {
+			offsets.set(i, offsets.get(i - 1));
+		}
+		offsets.set(0, 0);
+		neighbourList = new OffHeapNeighbourList(offsets, neighbourIds);
+	}
+
+	@Override
+	public void close() {
+		cellStart.close();
+		cellParticles.close();
+		if (neighbourList != null) {
+			neighbourList.close();
+		}
+	}
+
+}
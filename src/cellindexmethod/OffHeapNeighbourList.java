@@ -0,0 +1,46 @@
+package cellindexmethod;
+
+import model.DirectIntArray;
+import model.DirectLongArray;
+
+/**
+ * {@link NeighbourList} held off the heap: the neighbours of particle i are
+ * neighbourIds[offsets[i]] .. neighbourIds[offsets[i + 1] - 1]. Offsets are
+ * longs, so the total may exceed 2^31 entries.
+ */
+public class OffHeapNeighbourList implements AutoCloseable {
+
+	private final DirectLongArray offsets;
+	private final DirectIntArray neighbourIds;
+
+	OffHeapNeighbourList(DirectLongArray offsets, DirectIntArray neighbourIds) {
+		this.offsets = offsets;
+		this.neighbourIds = neighbourIds;
+	}
+
+	public long size() {
+		return offsets.length() - 1;
+	}
+
+	public int count(long i) {
+		return (int) (offsets.get(i + 1) - offsets.get(i));
+	}
+
+	public int neighbour(long i, int k) {
+		return neighbourIds.get(offsets.get(i) + k);
+	}
+
+	/**
+	 * @return the total number of entries, twice the number of pairs.
+	 */
+	public long entries() {
+		return neighbourIds.length();
+	}
+
+	@Override
+	public void close() {
+		offsets.close();
+		neighbourIds.close();
+	}
+
+}
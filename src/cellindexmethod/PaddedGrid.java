@@ -0,0 +1,134 @@
+package cellindexmethod;
+
+/**
+ * Cell grid copied into an (Mx + 2) x (My + 2) layout whose outer layer holds
+ * ghost copies of the opposite boundary cells, with coordinates already
+ * shifted by the box length. Cell (x, y) of the real grid is padded cell
+ * (x + 1, y + 1), so every half stencil offset from a real cell lands on a
+ * real or ghost cell without wrapping, and a pair test needs no minimum-image
+ * correction. Only the ghost cells the half stencil reaches are filled: the
+ * column x = Mx + 1 and the rows y = 0 and y = My + 1, and only across
+ * periodic bounds; behind a wall they stay empty.
+ *
+ * Particles are stored cell by cell; index[k] is the store index of the
+ * particle, or of the original of a ghost, at position k.
+ */
+class PaddedGrid {
+
+	private final int sideX;
+	private final int sideY;
+	private final int[] cellStart;
+	private final double[] x;
+	private final double[] y;
+	private final double[] radius;
+	private final int[] index;
+	private int maxOccupancy;
+
+	PaddedGrid(CellGrid grid, double[] xs, double[] ys, double[] radii, double lx, double ly, boolean periodicX,
+			boolean periodicY) {
+		int mx = grid.getMx();
+		int my = grid.getMy();
+		int[] realStart = grid.getCellStart();
+		int[] realParticles = grid.getCellParticles();
+		sideX = mx + 2;
+		sideY = my + 2;
+		cellStart = new int[sideX * sideY + 1];
+		for (int px = 0; px < sideX; px++) {
+			for (int py = 0; py < sideY; py++) {
+				int size = 0;
+				if (isFilled(px, py, periodicX, periodicY)) {
+					int c = source(px, py, mx, my);
+					size = realStart[c + 1] - realStart[c];
+				}
+				cellStart[px * sideY + py + 1] = size;
+				maxOccupancy = Math.max(maxOccupancy, size);
+			}
+		}
+		for (int c = 0; c < sideX * sideY; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int total = cellStart[sideX * sideY];
+		x = new double[total];
+		y = new double[total];
+		radius = new double[total];
+		index = new int[total];
+		for (int px = 0; px < sideX; px++) {
+			for (int py = 0; py < sideY; py++) {
+				if (!isFilled(px, py, periodicX, periodicY)) {
+					continue;
+				}
+				int c = source(px, py, mx, my);
+				double shiftX = px == sideX - 1 ? lx : 0;
+				double shiftY = py == 0 ? -ly : py == sideY - 1 ? ly : 0;
+				int k = cellStart[px * sideY + py];
+				for (int a = realStart[c]; a < realStart[c + 1]; a++, k++) {
+					int p = realParticles[a];
+					x[k] = xs[p] + shiftX;
+					y[k] = ys[p] + shiftY;
+					radius[k] = radii[p];
+					index[k] = p;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Column 0 is never reached by the half stencil, and ghosts only exist
+	 * across periodic bounds.
+	 */
+	private boolean isFilled(int px, int py, boolean periodicX, boolean periodicY) {
+		return px > 0 && (px < sideX - 1 || periodicX) && (py > 0 && py < sideY - 1 || periodicY);
+	}
+
+	/**
+	 * @return the real cell a padded cell holds, or copies.
+	 */
+	private static int source(int px, int py, int mx, int my) {
+		return (px - 1 + mx) % mx * my + (py - 1 + my) % my;
+	}
+
+	/**
+	 * @return the padded cell of real cell (x, y).
+	 */
+	int cellOf(int x, int y) {
+		return (x + 1) * sideY + y + 1;
+	}
+
+	/**
+	 * @return the padded cell offset of one stencil step (dx, dy).
+	 */
+	int offset(int dx, int dy) {
+		return dx * sideY + dy;
+	}
+
+	boolean isGhost(int cell) {
+		int px = cell / sideY;
+		int py = cell % sideY;
+		return px == sideX - 1 || py == 0 || py == sideY - 1;
+	}
+
+	int getMaxOccupancy() {
+		return maxOccupancy;
+	}
+
+	int[] getCellStart() {
+		return cellStart;
+	}
+
+	double[] getX() {
+		return x;
+	}
+
+	double[] getY() {
+		return y;
+	}
+
+	double[] getRadius() {
+		return radius;
+	}
+
+	int[] getIndex() {
+		return index;
+	}
+
+}
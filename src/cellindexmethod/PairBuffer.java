@@ -0,0 +1,48 @@
+package cellindexmethod;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of unordered index pairs, used by the finders before the
+ * pairs are compacted into a {@link NeighbourList}.
+ */
+class PairBuffer implements PairConsumer {
+
+	private int[] first;
+	private int[] second;
+	private int size;
+
+	PairBuffer(int capacity) {
+		capacity = Math.max(capacity, 1);
+		first = new int[capacity];
+		second = new int[capacity];
+	}
+
+	void add(int i, int j) {
+		if (size == first.length) {
+			first = Arrays.copyOf(first, size * 2);
+			second = Arrays.copyOf(second, size * 2);
+		}
+		first[size] = i;
+		second[size] = j;
+		size++;
+	}
+
+	@Override
+	public void accept(int i, int j, double dx, double dy, double dist2) {
+		add(i, j);
+	}
+
+	int size() {
+		return size;
+	}
+
+	int first(int k) {
+		return first[k];
+	}
+
+	int second(int k) {
+		return second[k];
+	}
+
+}
@@ -0,0 +1,18 @@
+package cellindexmethod;
+
+/**
+ * Receives every neighbour pair once, as it is found.
+ */
+public interface PairConsumer {
+
+	/**
+	 * @param i     - index of the first particle in the store.
+	 * @param j     - index of the second particle in the store.
+	 * @param dx    - x component of the vector from i to j, minimum image
+	 *              under periodic bounds.
+	 * @param dy    - y component of the vector from i to j.
+	 * @param dist2 - squared center distance, dx * dx + dy * dy.
+	 */
+	void accept(int i, int j, double dx, double dy, double dist2);
+
+}
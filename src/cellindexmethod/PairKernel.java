@@ -0,0 +1,67 @@
+package cellindexmethod;
+
+/**
+ * Pair distance kernel shared by the finders. It works on raw coordinates and
+ * applies the minimum-image convention arithmetically, so a pair check never
+ * allocates.
+ */
+public final class PairKernel {
+
+	private PairKernel() {
+	}
+
+	/**
+	 * @return the component d shifted by a multiple of l into [-l/2, l/2],
+	 *         assuming d was in (-l, l).
+	 */
+	public static double minimumImage(double d, double l) {
+		double half = l / 2;
+		if (d > half) {
+			return d - l;
+		}
+		if (d < -half) {
+			return d + l;
+		}
+		return d;
+	}
+
+	public static double dist2(double px, double py, double qx, double qy, double l, boolean periodicBounds) {
+		double dx = qx - px;
+		double dy = qy - py;
+		if (periodicBounds) {
+			dx = minimumImage(dx, l);
+			dy = minimumImage(dy, l);
+		}
+		return dx * dx + dy * dy;
+	}
+
+	public static double dist2(double px, double py, double pz, double qx, double qy, double qz, double l,
+			boolean periodicBounds) {
+		double dx = qx - px;
+		double dy = qy - py;
+		double dz = qz - pz;
+		if (periodicBounds) {
+			dx = minimumImage(dx, l);
+			dy = minimumImage(dy, l);
+			dz = minimumImage(dz, l);
+		}
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * @return true if the particles are closer than rc measured border to
+	 *         border.
+	 */
+	public static boolean areNeighbours(double px, double py, double pr, double qx, double qy, double qr, double rc,
+			double l, boolean periodicBounds) {
+		double r = rc + pr + qr;
+		return dist2(px, py, qx, qy, l, periodicBounds) < r * r;
+	}
+
+	public static boolean areNeighbours(double px, double py, double pz, double pr, double qx, double qy, double qz,
+			double qr, double rc, double l, boolean periodicBounds) {
+		double r = rc + pr + qr;
+		return dist2(px, py, pz, qx, qy, qz, l, periodicBounds) < r * r;
+	}
+
+}
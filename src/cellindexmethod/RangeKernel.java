@@ -0,0 +1,19 @@
+package cellindexmethod;
+
+/**
+ * Tests one particle against a contiguous range of particles at once.
+ */
+interface RangeKernel {
+
+	/**
+	 * Writes to hits the positions k in [from, to) for which the particle at
+	 * (px, py) with radius pr and the particle at (xs[k], ys[k]) with radius
+	 * rs[k] are closer than rc, border to border. Each periodic axis wraps with
+	 * its own box length.
+	 * 
+	 * @return the number of hits written.
+	 */
+	int hits(double px, double py, double pr, double[] xs, double[] ys, double[] rs, int from, int to, double rc,
+			double lx, double ly, boolean periodicX, boolean periodicY, int[] hits);
+
+}
@@ -0,0 +1,33 @@
+package cellindexmethod;
+
+/**
+ * Looks up the optional VectorRangeKernel. It lives in the separate vector/
+ * source root, compiled by the vector build profile, and needs the
+ * jdk.incubator.vector module at run time (--add-modules
+ * jdk.incubator.vector); without either, the scalar code is used.
+ */
+final class RangeKernels {
+
+	private static final RangeKernel VECTOR = loadVector();
+
+	private RangeKernels() {
+	}
+
+	/**
+	 * @return the vector kernel, or null when it was not compiled in or the
+	 *         module is absent.
+	 */
+	static RangeKernel vector() {
+		return VECTOR;
+	}
+
+	private static RangeKernel loadVector() {
+		try {
+			return (RangeKernel) Class.forName("cellindexmethod.VectorRangeKernel").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package cellindexmethod;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed at the end of every {@link CellIndexMethod} build with
+ * the contents of its {@link SearchMetrics}.
+ */
+@Name("cellindexmethod.Search")
+@Label("Cell Index Method Search")
+@Category("Cell Index Method")
+@Description("Phase timings and counters of one neighbour search")
+class SearchEvent extends jdk.jfr.Event {
+
+	@Label("Particles")
+	int n;
+
+	@Label("Cells Along X")
+	int m;
+
+	@Label("Cells Along Y")
+	int my;
+
+	@Label("Threads")
+	int threads;
+
+	@Label("Validation")
+	@Timespan(Timespan.NANOSECONDS)
+	long validation;
+
+	@Label("Binning")
+	@Timespan(Timespan.NANOSECONDS)
+	long binning;
+
+	@Label("Sweep")
+	@Timespan(Timespan.NANOSECONDS)
+	long sweep;
+
+	@Label("Materialisation")
+	@Timespan(Timespan.NANOSECONDS)
+	long materialisation;
+
+	@Label("Candidate Pairs")
+	long candidatePairs;
+
+	@Label("Accepted Pairs")
+	long acceptedPairs;
+
+	@Label("Periodic Wraps")
+	long periodicWraps;
+
+	@Label("Max Cell Occupancy")
+	int maxOccupancy;
+
+}
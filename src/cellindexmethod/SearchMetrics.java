@@ -0,0 +1,136 @@
+package cellindexmethod;
+
+/**
+ * Phase timings, in nanoseconds, and search counters of one
+ * {@link CellIndexMethod} build.
+ */
+public class SearchMetrics {
+
+	/**
+	 * Cells holding this many particles or more share the last histogram bin;
+	 * {@link #getMaxOccupancy()} is not capped.
+	 */
+	public static final int MAX_OCCUPANCY = 64;
+
+	private long validationNanos;
+	private long binningNanos;
+	private long sweepNanos;
+	private long materialisationNanos;
+	private long candidatePairs;
+	private long acceptedPairs;
+	private long periodicWraps;
+	private int[] occupancyHistogram = new int[MAX_OCCUPANCY + 1];
+	private int maxOccupancy;
+
+	public long getValidationNanos() {
+		return validationNanos;
+	}
+
+	public long getBinningNanos() {
+		return binningNanos;
+	}
+
+	public long getSweepNanos() {
+		return sweepNanos;
+	}
+
+	public long getMaterialisationNanos() {
+		return materialisationNanos;
+	}
+
+	public long getTotalNanos() {
+		return validationNanos + binningNanos + sweepNanos + materialisationNanos;
+	}
+
+	/**
+	 * @return pairs that went through the distance test.
+	 */
+	public long getCandidatePairs() {
+		return candidatePairs;
+	}
+
+	public long getAcceptedPairs() {
+		return acceptedPairs;
+	}
+
+	/**
+	 * @return candidate pairs whose cells are adjacent only across the periodic
+	 *         boundary.
+	 */
+	public long getPeriodicWraps() {
+		return periodicWraps;
+	}
+
+	/**
+	 * @return histogram[k] is the number of cells holding k particles.
+	 */
+	public int[] getOccupancyHistogram() {
+		return occupancyHistogram;
+	}
+
+	/**
+	 * @return the particles in the fullest cell, which may exceed
+	 *         MAX_OCCUPANCY.
+	 */
+	public int getMaxOccupancy() {
+		return maxOccupancy;
+	}
+
+	void setValidationNanos(long validationNanos) {
+		this.validationNanos = validationNanos;
+	}
+
+	void setBinningNanos(long binningNanos) {
+		this.binningNanos = binningNanos;
+	}
+
+	void setSweepNanos(long sweepNanos) {
+		this.sweepNanos = sweepNanos;
+	}
+
+	void setMaterialisationNanos(long materialisationNanos) {
+		this.materialisationNanos = materialisationNanos;
+	}
+
+	void addCandidatePairs(long count) {
+		candidatePairs += count;
+	}
+
+	void addAcceptedPairs(long count) {
+		acceptedPairs += count;
+	}
+
+	void addPeriodicWraps(long count) {
+		periodicWraps += count;
+	}
+
+	void resetSweep() {
+		sweepNanos = 0;
+		materialisationNanos = 0;
+		candidatePairs = 0;
+		acceptedPairs = 0;
+		periodicWraps = 0;
+	}
+
+	void fillOccupancyHistogram(int[] cellStart) {
+		for (int c = 0; c + 1 < cellStart.length; c++) {
+			int occupancy = cellStart[c + 1] - cellStart[c];
+			occupancyHistogram[Math.min(occupancy, MAX_OCCUPANCY)]++;
+			maxOccupancy = Math.max(maxOccupancy, occupancy);
+		}
+	}
+
+	void merge(SearchMetrics other) {
+		candidatePairs += other.candidatePairs;
+		acceptedPairs += other.acceptedPairs;
+		periodicWraps += other.periodicWraps;
+	}
+
+	@Override
+	public String toString() {
+		return "validation=" + validationNanos + "ns binning=" + binningNanos + "ns sweep=" + sweepNanos
+				+ "ns materialisation=" + materialisationNanos + "ns candidates=" + candidatePairs + " accepted="
+				+ acceptedPairs + " wraps=" + periodicWraps + " maxOccupancy=" + getMaxOccupancy();
+	}
+
+}
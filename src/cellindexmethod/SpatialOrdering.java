@@ -0,0 +1,164 @@
+package cellindexmethod;
+
+import java.util.Arrays;
+
+import model.ParticleStore;
+
+/**
+ * Permutation that sorts particles by the Z-order (Morton) or Hilbert index of
+ * their cell, so that particles of neighbouring cells are close in memory.
+ * Particle ids travel with the particles, and {@link #toOriginalOrder} maps a
+ * neighbour list of the sorted store back to the original indices.
+ *
+ * The permutation can be reused while particles stay near their cells, for
+ * example over several time steps, and rebuilt every so often.
+ */
+public class SpatialOrdering {
+
+	public enum Curve {
+		MORTON, HILBERT
+	}
+
+	/**
+	 * Largest cells per side, so that a curve index fits in 32 bits.
+	 */
+	public static final int MAX_M = 1 << 16;
+
+	private final int[] order;
+	private final int[] rank;
+
+	/**
+	 * @param m - cells per side of the ordering grid, usually the M of the
+	 *          search.
+	 */
+	public SpatialOrdering(ParticleStore store, double l, int m, Curve curve) {
+		if (m < 1 || m > MAX_M) {
+			throw new IllegalArgumentException("m must be in [1, " + MAX_M + "]");
+		}
+		int n = store.size();
+		double cellLength = l / m;
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, m - 1));
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int cx = cellOf(store.getX()[i], cellLength, m);
+			int cy = cellOf(store.getY()[i], cellLength, m);
+			long index = curve == Curve.MORTON ? morton(cx, cy) : hilbert(cx, cy, bits);
+			// flipping the sign bit makes the signed sort order the unsigned one,
+			// as indices of 2^31 and up shift into it
+			keys[i] = ((index << 32) | i) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(keys);
+		order = new int[n];
+		rank = new int[n];
+		for (int k = 0; k < n; k++) {
+			order[k] = (int) keys[k];
+			rank[order[k]] = k;
+		}
+	}
+
+	private static int cellOf(double coordinate, double cellLength, int m) {
+		return Math.max(0, Math.min((int) (coordinate / cellLength), m - 1));
+	}
+
+	/**
+	 * @return x and y interleaved bit by bit, x in the even bits.
+	 */
+	static long morton(int x, int y) {
+		return spread(x) | (spread(y) << 1);
+	}
+
+	private static long spread(int value) {
+		long v = value & 0xFFFFL;
+		v = (v | (v << 8)) & 0x00FF00FFL;
+		v = (v | (v << 4)) & 0x0F0F0F0FL;
+		v = (v | (v << 2)) & 0x33333333L;
+		v = (v | (v << 1)) & 0x55555555L;
+		return v;
+	}
+
+	/**
+	 * @return the distance of cell (x, y) along the Hilbert curve covering a
+	 *         2^bits x 2^bits grid.
+	 */
+	static long hilbert(int x, int y, int bits) {
+		long d = 0;
+		for (int s = (1 << bits) >> 1; s > 0; s >>= 1) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * @return order[k] is the original index of the particle at position k of
+	 *         the sorted store.
+	 */
+	public int[] getOrder() {
+		return order;
+	}
+
+	/**
+	 * @return rank[i] is the position in the sorted store of original particle
+	 *         i; the inverse of {@link #getOrder()}.
+	 */
+	public int[] getRank() {
+		return rank;
+	}
+
+	/**
+	 * @return a copy of store, which has to hold the same particles in the same
+	 *         order as the one the ordering was built from, sorted along the
+	 *         curve.
+	 */
+	public ParticleStore apply(ParticleStore store) {
+		int n = order.length;
+		if (store.size() != n) {
+			throw new IllegalArgumentException("Store size " + store.size() + " does not match " + n);
+		}
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] radius = new double[n];
+		int[] id = new int[n];
+		for (int k = 0; k < n; k++) {
+			int i = order[k];
+			x[k] = store.getX()[i];
+			y[k] = store.getY()[i];
+			radius[k] = store.getRadius()[i];
+			id[k] = store.getId()[i];
+		}
+		return new ParticleStore(x, y, radius, id);
+	}
+
+	/**
+	 * @return the neighbour list of a sorted store re-indexed by the original
+	 *         particle indices.
+	 */
+	public NeighbourList toOriginalOrder(NeighbourList sorted) {
+		int n = order.length;
+		int[] sortedOffsets = sorted.getOffsets();
+		int[] sortedIds = sorted.getNeighbourIds();
+		int[] offsets = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] = offsets[i] + sorted.count(rank[i]);
+		}
+		int[] neighbourIds = new int[sortedIds.length];
+		for (int i = 0; i < n; i++) {
+			int from = sortedOffsets[rank[i]];
+			for (int k = 0; k < sorted.count(rank[i]); k++) {
+				neighbourIds[offsets[i] + k] = order[sortedIds[from + k]];
+			}
+		}
+		return new NeighbourList(offsets, neighbourIds);
+	}
+
+}
@@ -0,0 +1,102 @@
+package cellindexmethod;
+
+import java.util.Arrays;
+
+import model.ParticleStore;
+
+/**
+ * Verlet neighbour list for time-stepped simulations. Candidates are searched
+ * with {@link CellIndexMethod} using rc + skin, and the search is only
+ * repeated once some particle has moved more than skin / 2 since the last
+ * build. In between, the cached candidates are filtered to the true rc.
+ */
+public class VerletList {
+
+	private final double l;
+	private final int m;
+	private final double rc;
+	private final double skin;
+	private final boolean periodicBounds;
+
+	private NeighbourList candidates;
+	private double[] referenceX;
+	private double[] referenceY;
+	private int rebuilds;
+
+	/**
+	 * @param m - cells per side; it has to be valid for rc + skin.
+	 */
+	public VerletList(double l, int m, double rc, double skin, boolean periodicBounds) {
+		if (skin < 0) {
+			throw new IllegalArgumentException("Skin must not be negative");
+		}
+		this.l = l;
+		this.m = m;
+		this.rc = rc;
+		this.skin = skin;
+		this.periodicBounds = periodicBounds;
+	}
+
+	/**
+	 * @param store - current positions; the same particles, in the same order,
+	 *              on every step.
+	 * @return the neighbours within rc for the current positions.
+	 */
+	public NeighbourList update(ParticleStore store) {
+		if (candidates == null || store.size() != referenceX.length || needsRebuild(store)) {
+			rebuild(store);
+		}
+		return filter(store);
+	}
+
+	public int getRebuilds() {
+		return rebuilds;
+	}
+
+	public double getSkin() {
+		return skin;
+	}
+
+	private boolean needsRebuild(ParticleStore store) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double limit2 = skin * skin / 4;
+		for (int i = 0; i < store.size(); i++) {
+			if (PairKernel.dist2(referenceX[i], referenceY[i], x[i], y[i], l, periodicBounds) > limit2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void rebuild(ParticleStore store) {
+		candidates = new CellIndexMethod(store, l, m, rc + skin, periodicBounds).getNeighbourList();
+		referenceX = store.getX().clone();
+		referenceY = store.getY().clone();
+		rebuilds++;
+	}
+
+	private NeighbourList filter(ParticleStore store) {
+		double[] x = store.getX();
+		double[] y = store.getY();
+		double[] radius = store.getRadius();
+		int n = candidates.size();
+		int[] candidateOffsets = candidates.getOffsets();
+		int[] candidateIds = candidates.getNeighbourIds();
+		int[] offsets = new int[n + 1];
+		int[] kept = new int[candidateIds.length];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			offsets[i] = count;
+			for (int k = candidateOffsets[i]; k < candidateOffsets[i + 1]; k++) {
+				int j = candidateIds[k];
+				if (PairKernel.areNeighbours(x[i], y[i], radius[i], x[j], y[j], radius[j], rc, l, periodicBounds)) {
+					kept[count++] = j;
+				}
+			}
+		}
+		offsets[n] = count;
+		return new NeighbourList(offsets, Arrays.copyOf(kept, count));
+	}
+
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Long-indexed array of primitives kept outside the Java heap in direct
+ * buffers of CHUNK_BYTES each, so it is not limited to 2^31 elements and is
+ * never copied by the collector. {@link #close()} frees the memory at once;
+ * the array must not be used afterwards.
+ *
+ * Direct memory is capped by -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size.
+ */
+abstract class DirectArray implements AutoCloseable {
+
+	static final int CHUNK_SHIFT = 27;
+	static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// the buffers are freed when they are collected instead
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final long length;
+	protected ByteBuffer[] chunks;
+
+	DirectArray(long length, int elementShift) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Negative length: " + length);
+		}
+		this.length = length;
+		long bytes = length << elementShift;
+		int count = (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+		chunks = new ByteBuffer[count];
+		for (int c = 0; c < count; c++) {
+			int size = (int) Math.min(1L << CHUNK_SHIFT, bytes - ((long) c << CHUNK_SHIFT));
+			chunks[c] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public void close() {
+		ByteBuffer[] freed = chunks;
+		// accesses after close fail on the null array instead of reading freed memory
+		chunks = null;
+		if (freed == null || INVOKE_CLEANER == null) {
+			return;
+		}
+		for (ByteBuffer chunk : freed) {
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, chunk);
+			} catch (ReflectiveOperationException e) {
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Off-heap double[] indexed by long; see {@link DirectArray}.
+ */
+public final class DirectDoubleArray extends DirectArray {
+
+	public DirectDoubleArray(long length) {
+		super(length, 3);
+	}
+
+	public double get(long i) {
+		long b = i << 3;
+		return chunks[(int) (b >>> CHUNK_SHIFT)].getDouble((int) (b & CHUNK_MASK));
+	}
+
+	public void set(long i, double value) {
+		long b = i << 3;
+		chunks[(int) (b >>> CHUNK_SHIFT)].putDouble((int) (b & CHUNK_MASK), value);
+	}
+
+}
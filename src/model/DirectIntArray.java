@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Off-heap int[] indexed by long; see {@link DirectArray}.
+ */
+public final class DirectIntArray extends DirectArray {
+
+	public DirectIntArray(long length) {
+		super(length, 2);
+	}
+
+	public int get(long i) {
+		long b = i << 2;
+		return chunks[(int) (b >>> CHUNK_SHIFT)].getInt((int) (b & CHUNK_MASK));
+	}
+
+	public void set(long i, int value) {
+		long b = i << 2;
+		chunks[(int) (b >>> CHUNK_SHIFT)].putInt((int) (b & CHUNK_MASK), value);
+	}
+
+}
@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Off-heap long[] indexed by long; see {@link DirectArray}.
+ */
+public final class DirectLongArray extends DirectArray {
+
+	public DirectLongArray(long length) {
+		super(length, 3);
+	}
+
+	public long get(long i) {
+		long b = i << 3;
+		return chunks[(int) (b >>> CHUNK_SHIFT)].getLong((int) (b & CHUNK_MASK));
+	}
+
+	public void set(long i, long value) {
+		long b = i << 3;
+		chunks[(int) (b >>> CHUNK_SHIFT)].putLong((int) (b & CHUNK_MASK), value);
+	}
+
+}
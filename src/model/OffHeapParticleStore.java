@@ -0,0 +1,75 @@
+package model;
+
+/**
+ * {@link ParticleStore} counterpart for systems too large for the heap: the
+ * same structure of arrays, held in {@link DirectArray}s. The memory belongs to
+ * the store until {@link #close()}.
+ */
+public class OffHeapParticleStore implements AutoCloseable {
+
+	private final long size;
+	private final DirectDoubleArray x;
+	private final DirectDoubleArray y;
+	private final DirectDoubleArray radius;
+	private final DirectIntArray id;
+
+	public OffHeapParticleStore(long size) {
+		this.size = size;
+		x = new DirectDoubleArray(size);
+		y = new DirectDoubleArray(size);
+		radius = new DirectDoubleArray(size);
+		id = new DirectIntArray(size);
+	}
+
+	public static OffHeapParticleStore from(ParticleStore store) {
+		OffHeapParticleStore offHeap = new OffHeapParticleStore(store.size());
+		for (int i = 0; i < store.size(); i++) {
+			offHeap.set(i, store.getX()[i], store.getY()[i], store.getRadius()[i], store.getId()[i]);
+		}
+		return offHeap;
+	}
+
+	public void set(long i, double x, double y, double radius, int id) {
+		this.x.set(i, x);
+		this.y.set(i, y);
+		this.radius.set(i, radius);
+		this.id.set(i, id);
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public double getX(long i) {
+		return x.get(i);
+	}
+
+	public double getY(long i) {
+		return y.get(i);
+	}
+
+	public double getRadius(long i) {
+		return radius.get(i);
+	}
+
+	public int getId(long i) {
+		return id.get(i);
+	}
+
+	public double maxRadius() {
+		double max = 0;
+		for (long i = 0; i < size; i++) {
+			max = Math.max(max, radius.get(i));
+		}
+		return max;
+	}
+
+	@Override
+	public void close() {
+		x.close();
+		y.close();
+		radius.close();
+		id.close();
+	}
+
+}
@@ -0,0 +1,79 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structure-of-arrays particle storage. Particle i is described by x[i], y[i],
+ * radius[i] and id[i]; the finders work on indices into these arrays.
+ */
+public class ParticleStore {
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] radius;
+	private final int[] id;
+
+	public ParticleStore(double[] x, double[] y, double[] radius, int[] id) {
+		if (y.length != x.length || radius.length != x.length || id.length != x.length) {
+			throw new IllegalArgumentException("Arrays must have the same length");
+		}
+		this.x = x;
+		this.y = y;
+		this.radius = radius;
+		this.id = id;
+	}
+
+	public static ParticleStore from(List<Particle> particles) {
+		int n = particles.size();
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] radius = new double[n];
+		int[] id = new int[n];
+		for (int i = 0; i < n; i++) {
+			Particle p = particles.get(i);
+			x[i] = p.getPoint().x;
+			y[i] = p.getPoint().y;
+			radius[i] = p.getRadius();
+			id[i] = p.getId();
+		}
+		return new ParticleStore(x, y, radius, id);
+	}
+
+	public List<Particle> toParticles() {
+		List<Particle> particles = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			particles.add(new Particle(id[i], x[i], y[i], radius[i]));
+		}
+		return particles;
+	}
+
+	public int size() {
+		return x.length;
+	}
+
+	public double[] getX() {
+		return x;
+	}
+
+	public double[] getY() {
+		return y;
+	}
+
+	public double[] getRadius() {
+		return radius;
+	}
+
+	public int[] getId() {
+		return id;
+	}
+
+	public double maxRadius() {
+		double max = 0;
+		for (double r : radius) {
+			max = Math.max(max, r);
+		}
+		return max;
+	}
+
+}
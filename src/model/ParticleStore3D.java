@@ -0,0 +1,52 @@
+package model;
+
+/**
+ * Structure-of-arrays storage for particles in three dimensions: particle i is
+ * described by x[i], y[i], z[i], radius[i] and id[i]. It is deliberately not a
+ * {@link ParticleStore}, so it cannot reach the 2D finders, which would ignore
+ * z.
+ */
+public class ParticleStore3D {
+
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private final double[] radius;
+	private final int[] id;
+
+	public ParticleStore3D(double[] x, double[] y, double[] z, double[] radius, int[] id) {
+		if (y.length != x.length || z.length != x.length || radius.length != x.length || id.length != x.length) {
+			throw new IllegalArgumentException("Arrays must have the same length");
+		}
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.radius = radius;
+		this.id = id;
+	}
+
+	public int size() {
+		return x.length;
+	}
+
+	public double[] getX() {
+		return x;
+	}
+
+	public double[] getY() {
+		return y;
+	}
+
+	public double[] getZ() {
+		return z;
+	}
+
+	public double[] getRadius() {
+		return radius;
+	}
+
+	public int[] getId() {
+		return id;
+	}
+
+}
@@ -47,7 +47,9 @@ public class Point {
 	}
 	
 	static public double dist2(Point p1, Point p2){
-		return abs2(sub(p1, p2));
+		double dx=p1.x-p2.x;
+		double dy=p1.y-p2.y;
+		return dx*dx+dy*dy;
 	}
 	
 	static public double scalarProd(Point p1, Point p2){
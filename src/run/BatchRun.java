@@ -0,0 +1,225 @@
+package run;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cellindexmethod.CellIndexMethod;
+import cellindexmethod.CellSizeTuner;
+import cellindexmethod.NeighbourList;
+import cellindexmethod.SearchMetrics;
+import model.ParticleStore;
+import utils.ParticleGenerator;
+
+/**
+ * Runs a sweep of {@link CellIndexMethod} configurations in one JVM and
+ * writes one CSV line per case. The sweep is read from a properties file
+ * where every key takes a comma separated list of values or, for numbers, a
+ * start:end[:step] range:
+ *
+ * <pre>
+ * l=20
+ * r=0.25
+ * rc=0.5,1
+ * n=1000:10000:1000
+ * m=auto,5,10
+ * pb=false,true
+ * seed=1:5
+ * repeat=5
+ * warmup=2
+ * threads=8
+ * </pre>
+ *
+ * Every combination of l, r, rc, n, m, pb and seed is one case. Each case is
+ * timed repeat times after warmup untimed runs, and cases run concurrently on
+ * a pool of threads workers.
+ */
+public class BatchRun {
+
+	private static final String CSV_HEADER = "l,r,rc,n,m,pb,seed,status,meanNanos,minNanos,binningNanos,sweepNanos,"
+			+ "materialisationNanos,candidatePairs,acceptedPairs,meanNeighbours,maxNeighbours";
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: BatchRun sweep.properties output.csv");
+		}
+		Properties spec = new Properties();
+		try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), Charset.forName("UTF-8"))) {
+			spec.load(reader);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot read sweep: " + args[0], e);
+		}
+		List<Case> cases = getCases(spec);
+		int repeat = Math.max(1, Integer.parseInt(spec.getProperty("repeat", "1")));
+		int warmup = Integer.parseInt(spec.getProperty("warmup", "1"));
+		int threads = Integer.parseInt(spec.getProperty("threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<String>> results = new ArrayList<>();
+		for (final Case c : cases) {
+			results.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return c.run(warmup, repeat);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		Path file = Paths.get(args[1]);
+		try (Writer writer = Files.newBufferedWriter(file, Charset.forName("UTF-8"))) {
+			writer.write(CSV_HEADER + "\n");
+			for (Future<String> result : results) {
+				writer.write(result.get() + "\n");
+			}
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static List<Case> getCases(Properties spec) {
+		List<Case> cases = new ArrayList<>();
+		for (String l : values(spec, "l")) {
+			for (String r : values(spec, "r")) {
+				for (String n : values(spec, "n")) {
+					for (String pb : values(spec, "pb")) {
+						for (String seed : values(spec, "seed")) {
+							// cases sharing a configuration share its particles
+							Configuration configuration = new Configuration(Double.parseDouble(l),
+									Double.parseDouble(r), Integer.parseInt(n), Boolean.parseBoolean(pb),
+									Integer.parseInt(seed));
+							for (String rc : values(spec, "rc")) {
+								for (String m : values(spec, "m")) {
+									cases.add(new Case(configuration, Double.parseDouble(rc), m));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return cases;
+	}
+
+	/**
+	 * @return the values of key: "a,b,c" or "start:end[:step]", ends included.
+	 */
+	private static List<String> values(Properties spec, String key) {
+		String value = spec.getProperty(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing sweep key: " + key);
+		}
+		List<String> values = new ArrayList<>();
+		for (String item : value.split(",")) {
+			item = item.trim();
+			String[] range = item.split(":");
+			if (range.length == 2 || range.length == 3) {
+				boolean integral = !item.contains(".");
+				double start = Double.parseDouble(range[0]);
+				double end = Double.parseDouble(range[1]);
+				double step = range.length == 3 ? Double.parseDouble(range[2]) : 1;
+				if (!(step > 0)) {
+					throw new IllegalArgumentException("Step must be positive: " + item);
+				}
+				for (int k = 0; start + k * step <= end + step * 1e-9; k++) {
+					double v = start + k * step;
+					values.add(integral ? Long.toString(Math.round(v)) : Double.toString(v));
+				}
+			} else {
+				values.add(item);
+			}
+		}
+		return values;
+	}
+
+	private static class Configuration {
+
+		private final double l, r;
+		private final int n, seed;
+		private final boolean periodicBounds;
+		private ParticleStore store;
+
+		Configuration(double l, double r, int n, boolean periodicBounds, int seed) {
+			this.l = l;
+			this.r = r;
+			this.n = n;
+			this.periodicBounds = periodicBounds;
+			this.seed = seed;
+		}
+
+		synchronized ParticleStore getStore() {
+			if (store == null) {
+				store = ParticleStore
+						.from(ParticleGenerator.randomSequentialAdsorption(l, r, periodicBounds, n, seed));
+			}
+			return store;
+		}
+	}
+
+	private static class Case {
+
+		private final Configuration configuration;
+		private final double rc;
+		private final String m;
+
+		Case(Configuration configuration, double rc, String m) {
+			this.configuration = configuration;
+			this.rc = rc;
+			this.m = m;
+		}
+
+		String run(int warmup, int repeat) {
+			Configuration c = configuration;
+			String prefix = c.l + "," + c.r + "," + rc + "," + c.n + ",";
+			String suffix = "," + c.periodicBounds + "," + c.seed + ",";
+			ParticleStore store;
+			int cells;
+			try {
+				store = c.getStore();
+				cells = m.equals("auto") ? CellSizeTuner.optimalM(store, c.l, rc) : Integer.parseInt(m);
+				for (int i = 0; i < warmup; i++) {
+					new CellIndexMethod(store, c.l, cells, rc, c.periodicBounds).getNeighbourList();
+				}
+			} catch (IllegalArgumentException e) {
+				return prefix + m + suffix + "invalid,,,,,,,,,";
+			}
+			long total = 0;
+			long min = Long.MAX_VALUE;
+			CellIndexMethod cim = null;
+			for (int i = 0; i < repeat; i++) {
+				long start = System.nanoTime();
+				cim = new CellIndexMethod(store, c.l, cells, rc, c.periodicBounds);
+				cim.getNeighbourList();
+				long elapsed = System.nanoTime() - start;
+				total += elapsed;
+				min = Math.min(min, elapsed);
+			}
+			SearchMetrics metrics = cim.getMetrics();
+			NeighbourList neighbours = cim.getNeighbourList();
+			int maxNeighbours = 0;
+			for (int i = 0; i < neighbours.size(); i++) {
+				maxNeighbours = Math.max(maxNeighbours, neighbours.count(i));
+			}
+			double meanNeighbours = neighbours.size() == 0 ? 0
+					: (double) neighbours.getNeighbourIds().length / neighbours.size();
+			return prefix + cells + suffix + "ok," + (total / repeat) + "," + min + "," + metrics.getBinningNanos()
+					+ "," + metrics.getSweepNanos() + "," + metrics.getMaterialisationNanos() + ","
+					+ metrics.getCandidatePairs() + "," + metrics.getAcceptedPairs() + "," + meanNeighbours + ","
+					+ maxNeighbours;
+		}
+	}
+
+}
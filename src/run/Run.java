@@ -10,12 +10,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import cellindexmethod.BruteForceMethod;
 import cellindexmethod.CellIndexMethod;
+import cellindexmethod.CellSizeTuner;
+import cellindexmethod.FinderSelector;
+import cellindexmethod.KdTree;
+import cellindexmethod.MultiLevelGrid;
+import cellindexmethod.NeighbourFinder;
 import model.Particle;
-import model.Point;
+import model.ParticleStore;
+import utils.BinaryNeighbourWriter;
+import utils.ParticleGenerator;
 import utils.Timer;
 import utils.XYZFilesGenerator;
 
@@ -23,39 +31,59 @@ public class Run {
 
 	public static void main(String[] args) {
 		Map<String, String> optsMap = getOptions(args);
-		runCIM(optsMap);
-		// runBFM(optsMap);
+		run(optsMap);
 	}
 
-	private static void runCIM(Map<String, String> optsMap) {
-		String lString, mString, rString, rcString, periodicBoundsString, generateXYZString, nString, seedString;
+	private static void run(Map<String, String> optsMap) {
+		String lString, lyString, mString, myString, rString, rcString, periodicBoundsString, periodicYString, generateXYZString, nString, seedString, threadsString, generatorString, formatString, idsString, engine;
 		
-		double l, r, rc;
-		boolean periodicBounds, generateXYZ;
+		double l, ly, r, rc;
+		boolean periodicBounds, periodicY, generateXYZ, binary;
 		String dirPath;
-		int m, n, seed;
+		int m, my, n, seed, threads;
+		int[] xyzIds;
+		boolean autoM, autoMy;
 		
 		
 		lString = optsMap.get("-l");
+		lyString = optsMap.get("-ly");
 		rString = optsMap.get("-r");
 		mString = optsMap.get("-m");
+		myString = optsMap.get("-my");
 		rcString= optsMap.get("-rc");
 		periodicBoundsString = optsMap.get("-pb");
+		periodicYString = optsMap.get("-pby");
 		dirPath = optsMap.get("-p");
 		nString = optsMap.get("-n");
 		seedString = optsMap.get("-s");
 		generateXYZString = optsMap.get("-xyz");
-		if (lString == null || rString == null || mString == null || rcString  == null || periodicBoundsString  == null || nString  == null || dirPath == null) {
-			throw new IllegalArgumentException("Missing parameter: -p path -l length -m cellsCount -r radius -rc radiusc -pb periodicBouds -n particles [-s seed] [-xyz generateXYZFiles]");
+		threadsString = optsMap.get("-t");
+		generatorString = optsMap.get("-g");
+		formatString = optsMap.get("-f");
+		idsString = optsMap.get("-ids");
+		engine = optsMap.containsKey("-e") ? optsMap.get("-e") : "cim";
+		if (engine.equals("cim") && mString == null) {
+			throw new IllegalArgumentException("Missing parameter: -m cellsCount|auto is required with -e cim");
+		}
+		if (lString == null || rString == null || rcString  == null || periodicBoundsString  == null || nString  == null || dirPath == null) {
+			throw new IllegalArgumentException("Missing parameter: -p path -l length [-ly length] [-m cellsCount|auto] [-my cellsCount|auto] -r radius -rc radiusc -pb periodicBouds [-pby periodicBounds] -n particles [-s seed] [-xyz generateXYZFiles] [-t threads] [-g rsa|poisson] [-f text|binary] [-ids id,id,...|all] [-e cim|bfm|multi|kdtree|auto]");
+		}
+		if (!engine.matches("cim|bfm|multi|kdtree|auto")) {
+			throw new IllegalArgumentException("Unknown engine: " + engine);
 		}
 		
 		try {
 			
 			l = Double.parseDouble(lString);
-			m = Integer.parseInt(mString);
+			ly = lyString != null ? Double.parseDouble(lyString) : l;
+			autoM = mString == null || mString.equals("auto");
+			m = autoM ? 0 : Integer.parseInt(mString);
+			autoMy = myString == null ? autoM : myString.equals("auto");
+			my = autoMy ? 0 : myString != null ? Integer.parseInt(myString) : m;
 			r = Double.parseDouble(rString);
 			rc = Double.parseDouble(rcString);
 			periodicBounds = Boolean.parseBoolean(periodicBoundsString);
+			periodicY = periodicYString != null ? Boolean.parseBoolean(periodicYString) : periodicBounds;
 			n = Integer.parseInt(nString);
 			if (seedString != null) {
 				seed = Integer.parseInt(seedString);
@@ -66,22 +94,85 @@ public class Run {
 			if (generateXYZString != null) {
 				generateXYZ = Boolean.parseBoolean(generateXYZString);
 			}
+			binary = "binary".equals(formatString);
+			xyzIds = null;
+			if (idsString != null && !idsString.equals("all")) {
+				String[] ids = idsString.split(",");
+				xyzIds = new int[ids.length];
+				for (int i = 0; i < ids.length; i++) {
+					xyzIds[i] = Integer.parseInt(ids[i].trim());
+				}
+			}
+			threads = 1;
+			if (threadsString != null) {
+				threads = Integer.parseInt(threadsString);
+			}
 		} catch (Exception e) {
-			throw new IllegalArgumentException("Wrong type parameter: -p path -l double -m M -rc double -pb boolean -n int -r double [-s int] [-xyz boolean]");
+			throw new IllegalArgumentException("Wrong type parameter: -p path -l double [-ly double] [-m int|auto] [-my int|auto] -rc double -pb boolean [-pby boolean] -n int -r double [-s int] [-xyz boolean] [-t int] [-g rsa|poisson] [-f text|binary] [-ids id,id,...|all] [-e cim|bfm|multi|kdtree|auto]");
+		}
+		
+		boolean square = l == ly && m == my && autoM == autoMy && periodicBounds == periodicY;
+		if (!square && !engine.equals("cim")) {
+			throw new IllegalArgumentException("Engine " + engine + " only supports square boxes; use -e cim with -ly, -my or -pby");
 		}
 		
 		try {
 			Timer timer = new Timer();
-			List<Particle> particles = generateRandomExample(l, r, periodicBounds, n, seed);
+			List<Particle> particles;
+			if ("poisson".equals(generatorString)) {
+				particles = ParticleGenerator.poissonDisk(l, ly, r, periodicBounds, periodicY, n, seed);
+			} else {
+				particles = ParticleGenerator.randomSequentialAdsorption(l, ly, r, periodicBounds, periodicY, n, seed);
+			}
+			ParticleStore store = ParticleStore.from(particles);
+			if (engine.equals("cim") && (autoM || autoMy)) {
+				int[] cells = square ? new int[] { CellSizeTuner.optimalM(store, l, rc), 0 }
+						: CellSizeTuner.optimalCells(store, l, ly, rc);
+				if (autoM) {
+					m = cells[0];
+				}
+				if (autoMy) {
+					my = square ? m : cells[1];
+				}
+			}
+			ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+			FinderSelector selector = null;
+			NeighbourFinder finder;
 			timer.start();
-			CellIndexMethod cim = new CellIndexMethod(particles, l, m, rc, periodicBounds);
+			switch (engine) {
+			case "auto":
+				selector = new FinderSelector(store, l, rc, periodicBounds);
+				finder = selector.newFinder(pool);
+				break;
+			case "bfm":
+				finder = new BruteForceMethod(store, l, rc, periodicBounds);
+				break;
+			case "multi":
+				finder = new MultiLevelGrid(store, l, rc, periodicBounds);
+				break;
+			case "kdtree":
+				finder = new KdTree(store, l, rc, periodicBounds, pool);
+				break;
+			default:
+				finder = new CellIndexMethod(particles, l, ly, m, my, rc, periodicBounds, periodicY, pool);
+			}
+			finder.getNeighbourList();
 			timer.stop();
+			if (pool != null) {
+				pool.shutdown();
+			}
 			
 			if (generateXYZ) {
-				XYZFilesGenerator.showNeighbours(dirPath, cim);
+				// a frame per particle is O(N^2) lines, so it has to be asked for
+				if ("all".equals(idsString)) {
+					xyzIds = XYZFilesGenerator.allIds(store);
+				} else if (xyzIds == null) {
+					xyzIds = XYZFilesGenerator.sample(store, XYZFilesGenerator.DEFAULT_FRAMES);
+				}
+				XYZFilesGenerator.showNeighbours(dirPath, finder, rc, xyzIds);
 			}
 			
-			writeFile(dirPath, cim, timer);
+			writeFile(dirPath, finder, particles, selector, timer, binary);
 			
 			
 		} catch (Exception e) {
@@ -115,51 +206,36 @@ public class Run {
 
 	}
 
-	public static List<Particle> generateRandomExample(double l, double r, boolean periodicBounds, int n, int seed) {
-		List<Particle> particles = new ArrayList<>();
-		Random generator = new Random(seed);
-		for (int i = 0; i < n; i++) {
-			double x = 0, y = 0;
-			do {
-				x = generator.nextDouble() * l;
-				y = generator.nextDouble() * l;
-			} while (!validxy(new Point(x, y), l, r, periodicBounds, particles));
-			particles.add(new Particle(i + 1, x, y, r));
-		}
-		return particles;
-	}
-
-	private static boolean validxy(Point point, double l, double r, boolean periodicBounds, List<Particle> particles) {
-		for (Particle particle : particles) {
-			Point p = particle.getPoint();
-			if (periodicBounds) {
-				if (point.x < p.x && point.x + l / 2 < p.x) {
-					point.x += l;
-				}
-				if (p.x < point.x && p.x + l / 2 < point.x) {
-					point.x -= l;
-				}
-				if (point.y < p.y && point.y + l / 2 < p.y) {
-					point.y += l;
-				}
-				if (p.y < point.y && p.y + l / 2 < point.y) {
-					point.y -= l;
-				}
-			}
-			if (Point.dist2(point, p) < Math.pow(2 * r, 2)) {
-				return false;
-			}
-		}
-		return true;
-	}
-	
-	private static void writeFile(String path, CellIndexMethod cim, Timer timer) {
+	/**
+	 * With binary set, the neighbours go to output.bin in the
+	 * {@link BinaryNeighbourWriter} format and output.txt only keeps the
+	 * header lines. The engine line gives the selector's choice and reason
+	 * when the engine was picked automatically.
+	 */
+	private static void writeFile(String path, NeighbourFinder finder, List<Particle> particles,
+			FinderSelector selector, Timer timer, boolean binary) {
 		Path file = Paths.get(path + "output.txt");
 		List<String> lines = new ArrayList<>();
 		
 		lines.add("Time: " + timer.getTime() + " ms");
+		lines.add("Engine: " + (selector != null ? selector : finder.getClass().getSimpleName()));
+		if (finder instanceof CellIndexMethod) {
+			CellIndexMethod cim = (CellIndexMethod) finder;
+			lines.add("M: " + (cim.getMx() == cim.getMy() ? cim.getMx() : cim.getMx() + " x " + cim.getMy()));
+			lines.add("Metrics: " + cim.getMetrics());
+		}
+		if (binary) {
+			lines.add("Output: " + path + "output.bin");
+			try {
+				BinaryNeighbourWriter.write(Paths.get(path + "output.bin"), finder.getNeighbourList(), finder.getStore());
+				Files.write(file, lines, Charset.forName("UTF-8"));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
 		lines.add("Output:");
-		for(Entry<Particle, Set<Particle>> entry : cim.getNeighbours().entrySet()) {
+		for(Entry<Particle, Set<Particle>> entry : finder.getNeighbourList().toMap(particles).entrySet()) {
 			StringBuffer s = new StringBuffer(entry.getKey().getId() + ": [ ");
 			
 			for(Particle p : entry.getValue()) {
@@ -0,0 +1,135 @@
+package utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the files written by {@link BinaryNeighbourWriter} one record at a
+ * time:
+ * 
+ * <pre>
+ * try (BinaryNeighbourReader reader = new BinaryNeighbourReader(file)) {
+ * 	while (reader.next()) {
+ * 		use(reader.getId(), reader.getNeighbours(), reader.getCount());
+ * 	}
+ * }
+ * </pre>
+ */
+public class BinaryNeighbourReader implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int size;
+	private int read;
+	private int id;
+	private int count;
+	private int[] neighbours = new int[16];
+
+	public BinaryNeighbourReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.limit(0);
+		fill(12);
+		if (buffer.getInt() != BinaryNeighbourWriter.MAGIC) {
+			channel.close();
+			throw new IOException("Not a neighbour list file: " + file);
+		}
+		int version = buffer.getInt();
+		if (version != BinaryNeighbourWriter.VERSION) {
+			channel.close();
+			throw new IOException("Unsupported version " + version + ": " + file);
+		}
+		size = buffer.getInt();
+	}
+
+	/**
+	 * @return the number of particles in the file.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Advances to the next particle.
+	 * 
+	 * @return false once every particle has been read.
+	 */
+	public boolean next() throws IOException {
+		if (read == size) {
+			return false;
+		}
+		id = getVarint();
+		count = getVarint();
+		if (neighbours.length < count) {
+			neighbours = new int[Math.max(count, neighbours.length * 2)];
+		}
+		int previous = 0;
+		for (int k = 0; k < count; k++) {
+			previous += getVarint();
+			neighbours[k] = previous;
+		}
+		read++;
+		return true;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the neighbour ids of the current particle, sorted ascending, in
+	 *         the first {@link #getCount()} positions. The array is reused by
+	 *         the next call to {@link #next()}.
+	 */
+	public int[] getNeighbours() {
+		return neighbours;
+	}
+
+	public int[] copyNeighbours() {
+		return Arrays.copyOf(neighbours, count);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int getVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			fill(1);
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private void fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+
+}
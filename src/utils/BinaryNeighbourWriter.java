@@ -0,0 +1,91 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import cellindexmethod.NeighbourList;
+import model.ParticleStore;
+
+/**
+ * Streams a neighbour list to a compact binary file through a
+ * {@link FileChannel}. Layout, little endian:
+ * 
+ * <pre>
+ * int magic ("NBRL"), int version, int particle count
+ * per particle: varint id, varint neighbour count,
+ *               neighbour ids sorted ascending, the first as a varint and the
+ *               rest as varint deltas from the previous one
+ * </pre>
+ * 
+ * Varints use 7 bits per byte, least significant group first, with the high
+ * bit set on every byte but the last.
+ */
+public class BinaryNeighbourWriter {
+
+	public static final int MAGIC = 0x4C52424E;
+	public static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	/*
+	 * Bytes taken by the varint of an int, at most.
+	 */
+	private static final int MAX_VARINT = 5;
+
+	public static void write(Path file, NeighbourList neighbours, ParticleStore store) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			int[] id = store.getId();
+			int[] sorted = new int[16];
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(neighbours.size());
+			for (int i = 0; i < neighbours.size(); i++) {
+				int count = neighbours.count(i);
+				if (sorted.length < count) {
+					sorted = new int[Math.max(count, sorted.length * 2)];
+				}
+				for (int k = 0; k < count; k++) {
+					sorted[k] = id[neighbours.neighbour(i, k)];
+				}
+				Arrays.sort(sorted, 0, count);
+				ensure(channel, buffer, 2 * MAX_VARINT);
+				putVarint(buffer, id[i]);
+				putVarint(buffer, count);
+				int previous = 0;
+				for (int k = 0; k < count; k++) {
+					ensure(channel, buffer, MAX_VARINT);
+					putVarint(buffer, sorted[k] - previous);
+					previous = sorted[k];
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+}
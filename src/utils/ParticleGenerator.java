@@ -0,0 +1,262 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import cellindexmethod.PairKernel;
+import model.Particle;
+
+/**
+ * Random non-overlapping particles of radius r in an L x L box, or an Lx x Ly
+ * box with periodicity chosen per axis. Overlap tests
+ * only look at the 3 x 3 cells around a candidate, so generation is linear in
+ * the number of particles for a given packing fraction.
+ */
+public class ParticleGenerator {
+
+	/**
+	 * Candidates tried per particle before giving up on a box that is too full.
+	 */
+	public static final int MAX_ATTEMPTS = 1000000;
+
+	private static final int POISSON_ATTEMPTS = 30;
+	private static final int BLOCK_SIZE = 4096;
+
+	private final double lx;
+	private final double ly;
+	private final double r;
+	private final boolean periodicX;
+	private final boolean periodicY;
+	private final int mx;
+	private final int my;
+	private final double cellLengthX;
+	private final double cellLengthY;
+	private final int[] head;
+	private int[] next;
+	private double[] x;
+	private double[] y;
+	private int count;
+
+	private ParticleGenerator(double lx, double ly, double r, boolean periodicX, boolean periodicY, int n) {
+		this.lx = lx;
+		this.ly = ly;
+		this.r = r;
+		this.periodicX = periodicX;
+		this.periodicY = periodicY;
+		double side = Math.max(2 * r, Math.sqrt(lx * ly / Math.max(1, n)));
+		this.mx = (int) Math.max(1, Math.min(lx / (2 * r), Math.ceil(lx / side)));
+		this.my = (int) Math.max(1, Math.min(ly / (2 * r), Math.ceil(ly / side)));
+		this.cellLengthX = lx / mx;
+		this.cellLengthY = ly / my;
+		head = new int[mx * my];
+		Arrays.fill(head, -1);
+		next = new int[n];
+		x = new double[n];
+		y = new double[n];
+	}
+
+	/**
+	 * Random sequential adsorption: uniform candidates are drawn from
+	 * new Random(seed) and kept when they overlap no particle placed before.
+	 */
+	public static List<Particle> randomSequentialAdsorption(double l, double r, boolean periodicBounds, int n,
+			int seed) {
+		return randomSequentialAdsorption(l, l, r, periodicBounds, periodicBounds, n, seed);
+	}
+
+	public static List<Particle> randomSequentialAdsorption(double lx, double ly, double r, boolean periodicX,
+			boolean periodicY, int n, int seed) {
+		ParticleGenerator generator = new ParticleGenerator(lx, ly, r, periodicX, periodicY, n);
+		Random random = new Random(seed);
+		for (int i = 0; i < n; i++) {
+			int attempts = 0;
+			double cx, cy;
+			do {
+				if (attempts++ == MAX_ATTEMPTS) {
+					throw new IllegalArgumentException("Could not place particle " + (i + 1) + " of " + n);
+				}
+				cx = random.nextDouble() * lx;
+				cy = random.nextDouble() * ly;
+			} while (!generator.isFree(cx, cy));
+			generator.add(cx, cy);
+		}
+		return generator.toParticles();
+	}
+
+	/**
+	 * Same as {@link #randomSequentialAdsorption}, but candidates are drawn in
+	 * blocks, each from its own stream split off new SplittableRandom(seed), and
+	 * the blocks are generated in parallel. Candidates are still accepted in
+	 * order, so the result only depends on the seed.
+	 */
+	public static List<Particle> randomSequentialAdsorption(double l, double r, boolean periodicBounds, int n,
+			long seed, ForkJoinPool pool) {
+		ParticleGenerator generator = new ParticleGenerator(l, l, r, periodicBounds, periodicBounds, n);
+		SplittableRandom root = new SplittableRandom(seed);
+		int blocks = Math.max(1, pool.getParallelism());
+		double[] candidates = new double[2 * BLOCK_SIZE * blocks];
+		long attempts = 0;
+		while (generator.count < n) {
+			CandidateTask[] tasks = new CandidateTask[blocks];
+			for (int b = 0; b < blocks; b++) {
+				tasks[b] = new CandidateTask(root.split(), candidates, 2 * BLOCK_SIZE * b, l);
+				pool.execute(tasks[b]);
+			}
+			for (CandidateTask task : tasks) {
+				task.join();
+			}
+			for (int k = 0; k < candidates.length && generator.count < n; k += 2, attempts++) {
+				if (generator.isFree(candidates[k], candidates[k + 1])) {
+					generator.add(candidates[k], candidates[k + 1]);
+					attempts = 0;
+				}
+			}
+			if (attempts >= MAX_ATTEMPTS) {
+				throw new IllegalArgumentException("Could not place particle " + (generator.count + 1) + " of " + n);
+			}
+		}
+		return generator.toParticles();
+	}
+
+	/**
+	 * Poisson-disk sampling (Bridson): new particles are tried in the annulus
+	 * [2r, 4r) around particles that still have room, so close to saturation
+	 * few candidates are wasted on space that is already covered.
+	 *
+	 * @throws IllegalArgumentException if the box is saturated before n
+	 *                                  particles are placed.
+	 */
+	public static List<Particle> poissonDisk(double l, double r, boolean periodicBounds, int n, int seed) {
+		return poissonDisk(l, l, r, periodicBounds, periodicBounds, n, seed);
+	}
+
+	public static List<Particle> poissonDisk(double lx, double ly, double r, boolean periodicX, boolean periodicY,
+			int n, int seed) {
+		ParticleGenerator generator = new ParticleGenerator(lx, ly, r, periodicX, periodicY, n);
+		Random random = new Random(seed);
+		int[] active = new int[n];
+		int activeCount = 0;
+		if (n > 0) {
+			generator.add(random.nextDouble() * lx, random.nextDouble() * ly);
+			active[activeCount++] = 0;
+		}
+		while (generator.count < n && activeCount > 0) {
+			int k = random.nextInt(activeCount);
+			int p = active[k];
+			boolean placed = false;
+			for (int attempt = 0; attempt < POISSON_ATTEMPTS && !placed; attempt++) {
+				double angle = random.nextDouble() * 2 * Math.PI;
+				double distance = 2 * r * (1 + random.nextDouble());
+				double cx = generator.x[p] + distance * Math.cos(angle);
+				double cy = generator.y[p] + distance * Math.sin(angle);
+				if (periodicX) {
+					cx = (cx + lx) % lx;
+				} else if (cx < 0 || cx >= lx) {
+					continue;
+				}
+				if (periodicY) {
+					cy = (cy + ly) % ly;
+				} else if (cy < 0 || cy >= ly) {
+					continue;
+				}
+				if (generator.isFree(cx, cy)) {
+					active[activeCount++] = generator.count;
+					generator.add(cx, cy);
+					placed = true;
+				}
+			}
+			if (!placed) {
+				active[k] = active[--activeCount];
+			}
+		}
+		if (generator.count < n) {
+			throw new IllegalArgumentException("Only " + generator.count + " of " + n + " particles fit");
+		}
+		return generator.toParticles();
+	}
+
+	private int cellOfX(double coordinate) {
+		return Math.min((int) (coordinate / cellLengthX), mx - 1);
+	}
+
+	private int cellOfY(double coordinate) {
+		return Math.min((int) (coordinate / cellLengthY), my - 1);
+	}
+
+	private boolean isFree(double px, double py) {
+		int cx = cellOfX(px);
+		int cy = cellOfY(py);
+		double minDist2 = 4 * r * r;
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				int xx = cx + dx;
+				int yy = cy + dy;
+				if ((!periodicX && (xx < 0 || xx >= mx)) || (!periodicY && (yy < 0 || yy >= my))) {
+					continue;
+				}
+				xx = (xx + mx) % mx;
+				yy = (yy + my) % my;
+				for (int q = head[xx * my + yy]; q != -1; q = next[q]) {
+					double ex = x[q] - px;
+					double ey = y[q] - py;
+					if (periodicX) {
+						ex = PairKernel.minimumImage(ex, lx);
+					}
+					if (periodicY) {
+						ey = PairKernel.minimumImage(ey, ly);
+					}
+					if (ex * ex + ey * ey < minDist2) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private void add(double px, double py) {
+		int c = cellOfX(px) * my + cellOfY(py);
+		x[count] = px;
+		y[count] = py;
+		next[count] = head[c];
+		head[c] = count;
+		count++;
+	}
+
+	private List<Particle> toParticles() {
+		List<Particle> particles = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			particles.add(new Particle(i + 1, x[i], y[i], r));
+		}
+		return particles;
+	}
+
+	private static class CandidateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final SplittableRandom random;
+		private final double[] candidates;
+		private final int from;
+		private final double l;
+
+		CandidateTask(SplittableRandom random, double[] candidates, int from, double l) {
+			this.random = random;
+			this.candidates = candidates;
+			this.from = from;
+			this.l = l;
+		}
+
+		@Override
+		protected void compute() {
+			for (int k = from; k < from + 2 * BLOCK_SIZE; k++) {
+				candidates[k] = random.nextDouble() * l;
+			}
+		}
+	}
+
+}
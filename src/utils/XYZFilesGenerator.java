@@ -1,18 +1,18 @@
 package utils;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import cellindexmethod.CellIndexMethod;
-import model.Particle;
+import cellindexmethod.NeighbourFinder;
+import cellindexmethod.NeighbourList;
+import model.ParticleStore;
 
 public class XYZFilesGenerator {
 
@@ -21,70 +21,139 @@ public class XYZFilesGenerator {
 	private final static String BLUE = "0 0 1";
 	private final static String SOLID = "0";
 	private final static String SEMI_TRANSPARENT = "0.8";
-
+	private final static String[] COLORS = { GREEN, RED, BLUE };
+	private final static byte OTHER = 0, NEIGHBOUR = 1, SELECTED = 2;
+
+	/**
+	 * Frames written when no ids are given.
+	 */
+	public final static int DEFAULT_FRAMES = 10;
+
+	/**
+	 * Writes basic.xyz with every particle, and neighbours.xyz with a frame for
+	 * each of {@link #DEFAULT_FRAMES} particles spread over the store.
+	 */
 	public static void showNeighbours(String outputPath, CellIndexMethod cim) {
-		List<String> header = getNeighboursHeader(cim.getNeighbours().size());
-		List<String> lines = new ArrayList<>(header);
-		addBasicBody(cim, lines);
-		writeFile(outputPath + "basic.xyz", lines);
+		showNeighbours(outputPath, cim, sample(cim.getStore(), DEFAULT_FRAMES));
+	}
 
-		for (Map.Entry<Particle, Set<Particle>> entry : cim.getNeighbours().entrySet()) {
-			lines.clear();
-			lines.addAll(header);
+	/**
+	 * Every frame holds all N particles, so passing {@link #allIds} writes
+	 * O(N^2) lines.
+	 * 
+	 * @param ids - particles that get a frame in neighbours.xyz.
+	 */
+	public static void showNeighbours(String outputPath, CellIndexMethod cim, int[] ids) {
+		showNeighbours(outputPath, cim, cim.getRc(), ids);
+	}
 
-			addShowNeighboursBody(entry, cim, lines);
+	/**
+	 * Same as {@link #showNeighbours(String, CellIndexMethod, int[])} for any
+	 * engine; rc is the interaction radius drawn around the selected particle.
+	 */
+	public static void showNeighbours(String outputPath, NeighbourFinder finder, double rc, int[] ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException("No ids given; use sample or allIds");
+		}
+		ParticleStore store = finder.getStore();
+		String[] prefixes = getParticlePrefixes(store);
+		byte[] colors = new byte[store.size()];
+
+		try (Writer writer = newWriter(outputPath + "basic.xyz")) {
+			writeHeader(writer, store.size());
+			for (int i = 0; i < store.size(); i++) {
+				writeParticleLine(writer, prefixes[i], GREEN, SOLID);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
-			writeFile(outputPath + "id_" + entry.getKey().getId() + ".xyz", lines);
+		try (Writer writer = newWriter(outputPath + "neighbours.xyz")) {
+			Map<Integer, Integer> indexById = new HashMap<Integer, Integer>();
+			for (int i = 0; i < store.size(); i++) {
+				indexById.put(store.getId()[i], i);
+			}
+			for (int id : ids) {
+				Integer i = indexById.get(id);
+				if (i != null) {
+					writeFrame(writer, i, finder, rc, prefixes, colors);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 
-	private static void addShowNeighboursBody(Entry<Particle, Set<Particle>> p, CellIndexMethod cim,
-			List<String> lines) {
-		lines.add(getParticleLine(p.getKey(), BLUE));
-		lines.add(getParticleRcLine(p.getKey(), cim.getRc(), BLUE));
-		
-		for (Particle neigh : p.getValue()) {
-			lines.add(getParticleLine(neigh, RED));
+	/**
+	 * One frame: the selected particle, its rc circle, its neighbours in red
+	 * and everything else in green. Colours are looked up in an array that is
+	 * reset after the frame, touching only the selected particle and its
+	 * neighbours.
+	 */
+	private static void writeFrame(Writer writer, int selected, NeighbourFinder finder, double rc,
+			String[] prefixes, byte[] colors) throws IOException {
+		ParticleStore store = finder.getStore();
+		NeighbourList neighbours = finder.getNeighbourList();
+		colors[selected] = SELECTED;
+		for (int k = 0; k < neighbours.count(selected); k++) {
+			colors[neighbours.neighbour(selected, k)] = NEIGHBOUR;
 		}
-		
-		for (Map.Entry<Particle, Set<Particle>> entry : cim.getNeighbours().entrySet()) {
-			if (!entry.getKey().equals(p.getKey()) && !p.getValue().contains(entry.getKey())) {
-				lines.add(getParticleLine(entry.getKey(), GREEN));
-			}
+
+		writeHeader(writer, store.size() + 1);
+		writer.write(store.getId()[selected] + " " + store.getX()[selected] + " " + store.getY()[selected] + " "
+				+ (store.getRadius()[selected] + rc) + " " + BLUE + " " + SEMI_TRANSPARENT + "\n");
+		for (int i = 0; i < store.size(); i++) {
+			writeParticleLine(writer, prefixes[i], COLORS[colors[i]], SOLID);
+		}
+
+		colors[selected] = OTHER;
+		for (int k = 0; k < neighbours.count(selected); k++) {
+			colors[neighbours.neighbour(selected, k)] = OTHER;
 		}
+	}
 
+	/**
+	 * @return the ids of count particles evenly spaced in store order, or of
+	 *         all of them if there are fewer.
+	 */
+	public static int[] sample(ParticleStore store, int count) {
+		int n = store.size();
+		int[] ids = new int[Math.min(count, n)];
+		for (int k = 0; k < ids.length; k++) {
+			ids[k] = store.getId()[(int) ((long) k * n / ids.length)];
+		}
+		return ids;
 	}
 
-	private static List<String> getNeighboursHeader(int size) {
-		List<String> header = new ArrayList<>();
-		header.add(Integer.toString(size));
-		header.add("ParticleId xCoordinate yCoordinate Radius R G B Transparency");
-		return header;
+	public static int[] allIds(ParticleStore store) {
+		return store.getId().clone();
 	}
 
-	private static void addBasicBody(CellIndexMethod cim, List<String> lines) {
-		for (Map.Entry<Particle, Set<Particle>> entry : cim.getNeighbours().entrySet()) {
-			lines.add(getParticleLine(entry.getKey(), GREEN));
+	private static String[] getParticlePrefixes(ParticleStore store) {
+		String[] prefixes = new String[store.size()];
+		for (int i = 0; i < store.size(); i++) {
+			prefixes[i] = store.getId()[i] + " " + store.getX()[i] + " " + store.getY()[i] + " "
+					+ store.getRadius()[i] + " ";
 		}
+		return prefixes;
 	}
 
-	private static String getParticleLine(Particle p, String color) {
-		return p.getId() + " " + p.getPoint().x + " " + p.getPoint().y + " " + p.getRadius() + " " + color + " "
-				+ SOLID;
+	private static void writeHeader(Writer writer, int size) throws IOException {
+		writer.write(Integer.toString(size));
+		writer.write("\nParticleId xCoordinate yCoordinate Radius R G B Transparency\n");
 	}
 
-	private static String getParticleRcLine(Particle p, double rc, String color) {
-		return p.getId() + " " + p.getPoint().x + " " + p.getPoint().y + " " + (p.getRadius() + rc) + " " + color + " "
-				+ SEMI_TRANSPARENT;
+	private static void writeParticleLine(Writer writer, String prefix, String color, String transparency)
+			throws IOException {
+		writer.write(prefix);
+		writer.write(color);
+		writer.write(' ');
+		writer.write(transparency);
+		writer.write('\n');
 	}
 
-	private static void writeFile(String path, List<String> lines) {
-		Path file = Paths.get(path);
-		try {
-			Files.write(file, lines, Charset.forName("UTF-8"));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	private static BufferedWriter newWriter(String path) throws IOException {
+		return Files.newBufferedWriter(Paths.get(path), Charset.forName("UTF-8"));
 	}
 
 }
@@ -0,0 +1,66 @@
+package cellindexmethod;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RangeKernel} on the Vector API: squared distances, minimum-image
+ * wrapping and the rc + ri + rj cutoff are computed lane-wise, in the same
+ * order as the scalar code so both agree bit for bit. Only loaded through
+ * {@link RangeKernels}.
+ */
+final class VectorRangeKernel implements RangeKernel {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public int hits(double px, double py, double pr, double[] xs, double[] ys, double[] rs, int from, int to,
+			double rc, double lx, double ly, boolean periodicX, boolean periodicY, int[] hits) {
+		int count = 0;
+		int k = from;
+		int upper = from + SPECIES.loopBound(to - from);
+		double base = rc + pr;
+		for (; k < upper; k += SPECIES.length()) {
+			DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, k).sub(px);
+			DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, k).sub(py);
+			if (periodicX) {
+				dx = minimumImage(dx, lx);
+			}
+			if (periodicY) {
+				dy = minimumImage(dy, ly);
+			}
+			DoubleVector dist2 = dx.mul(dx).add(dy.mul(dy));
+			DoubleVector r = DoubleVector.broadcast(SPECIES, base).add(DoubleVector.fromArray(SPECIES, rs, k));
+			long mask = dist2.compare(VectorOperators.LT, r.mul(r)).toLong();
+			while (mask != 0) {
+				hits[count++] = k + Long.numberOfTrailingZeros(mask);
+				mask &= mask - 1;
+			}
+		}
+		for (; k < to; k++) {
+			double dx = xs[k] - px;
+			double dy = ys[k] - py;
+			if (periodicX) {
+				dx = PairKernel.minimumImage(dx, lx);
+			}
+			if (periodicY) {
+				dy = PairKernel.minimumImage(dy, ly);
+			}
+			double r = base + rs[k];
+			if (dx * dx + dy * dy < r * r) {
+				hits[count++] = k;
+			}
+		}
+		return count;
+	}
+
+	private static DoubleVector minimumImage(DoubleVector d, double l) {
+		double half = l / 2;
+		VectorMask<Double> above = d.compare(VectorOperators.GT, half);
+		VectorMask<Double> below = d.compare(VectorOperators.LT, -half);
+		return d.sub(l, above).add(l, below);
+	}
+
+}